@@ -0,0 +1,70 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a file through the streaming update(File) and the memory mapped update(Path) and updateParallel(Path).
+ * The file is written once per trial, so it is usually served from the page cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+    @Param({"4096", "1048576", "268435456"})
+    int size;
+
+    Path path;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("blake3-bench", ".bin");
+        Files.write(path, Hashers.randomBytes(size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public byte[] updateFile() throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(new File(path.toString()));
+        return hasher.digest();
+    }
+
+    @Benchmark
+    public byte[] updatePath() throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(path);
+        return hasher.digest();
+    }
+
+    @Benchmark
+    public byte[] updatePathParallel() throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        hasher.updateParallel(path);
+        return hasher.digest();
+    }
+}
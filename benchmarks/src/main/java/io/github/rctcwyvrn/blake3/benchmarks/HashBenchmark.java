@@ -0,0 +1,55 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shot hashing of in memory inputs from 1 byte to 1 GiB, below, at and above the chunk length,
+ * for each of the hash, keyed hash and derive key modes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class HashBenchmark {
+    @Param({"1", "64", "1023", "1024", "1025", "16384", "1048576", "1073741824"})
+    int size;
+
+    @Param({"hash", "keyed", "derive"})
+    String mode;
+
+    byte[] input;
+
+    @Setup
+    public void setup(){
+        input = Hashers.randomBytes(size);
+    }
+
+    @Benchmark
+    public byte[] newHasher(){
+        Blake3 hasher = Hashers.newHasher(mode);
+        hasher.update(input);
+        return hasher.digest();
+    }
+
+    @Benchmark
+    public byte[] newHasherParallel(){
+        Blake3 hasher = Hashers.newHasher(mode);
+        hasher.updateParallel(input);
+        return hasher.digest();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a batch of small independent messages with hashMany, against a loop of individual hashers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashManyBenchmark {
+    @Param({"1024"})
+    int count;
+
+    @Param({"16", "64", "256", "1024"})
+    int size;
+
+    byte[][] inputs;
+    byte[] outputs;
+
+    @Setup
+    public void setup(){
+        byte[] bytes = Hashers.randomBytes(count * size);
+        inputs = new byte[count][];
+        for(int i = 0; i < count; i++){
+            inputs[i] = new byte[size];
+            System.arraycopy(bytes, i * size, inputs[i], 0, size);
+        }
+        outputs = new byte[count * 32];
+    }
+
+    @Benchmark
+    public byte[] hashMany(){
+        Blake3.hashMany(inputs, outputs);
+        return outputs;
+    }
+
+    @Benchmark
+    public byte[] hasherLoop(){
+        for(int i = 0; i < count; i++){
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(inputs[i]);
+            hasher.digest(outputs, i * 32, 32);
+        }
+        return outputs;
+    }
+}
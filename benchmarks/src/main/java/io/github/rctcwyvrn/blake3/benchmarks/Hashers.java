@@ -0,0 +1,35 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Shared setup for the benchmarks
+final class Hashers {
+    static final byte[] KEY = "whats the Elvish word for friend".getBytes(StandardCharsets.US_ASCII);
+    static final String CONTEXT = "blake3 benchmarks 2026-10-17 derive key";
+
+    private Hashers(){
+    }
+
+    // mode is one of hash, keyed or derive
+    static Blake3 newHasher(String mode){
+        switch(mode){
+            case "hash":
+                return Blake3.newInstance();
+            case "keyed":
+                return Blake3.newKeyedHasher(KEY);
+            case "derive":
+                return Blake3.newKeyDerivationHasher(CONTEXT);
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    static byte[] randomBytes(int len){
+        byte[] bytes = new byte[len];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
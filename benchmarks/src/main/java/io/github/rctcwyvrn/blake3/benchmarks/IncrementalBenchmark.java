@@ -0,0 +1,48 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing 1 MiB fed to the hasher in small pieces, which exercises the partial block and chunk buffering
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalBenchmark {
+    private static final int TOTAL_LEN = 1 << 20;
+
+    @Param({"1", "7", "64", "100", "1024", "4096"})
+    int pieceLen;
+
+    byte[] input;
+
+    @Setup
+    public void setup(){
+        input = Hashers.randomBytes(TOTAL_LEN);
+    }
+
+    @Benchmark
+    public byte[] updateInPieces(){
+        Blake3 hasher = Blake3.newInstance();
+        for(int offset = 0; offset < TOTAL_LEN; offset += pieceLen){
+            hasher.update(input, offset, Math.min(pieceLen, TOTAL_LEN - offset));
+        }
+        return hasher.digest();
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.rctcwyvrn.blake3.benchmarks;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.OutputReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extended output of various lengths, through digest(int) and through an OutputReader into a reused buffer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XofBenchmark {
+    @Param({"32", "64", "1024", "65536", "1048576"})
+    int outputLen;
+
+    Blake3 hasher;
+    byte[] output;
+
+    @Setup
+    public void setup(){
+        hasher = Blake3.newInstance();
+        hasher.update(Hashers.randomBytes(100));
+        output = new byte[outputLen];
+    }
+
+    @Benchmark
+    public byte[] digest(){
+        return hasher.digest(outputLen);
+    }
+
+    @Benchmark
+    public byte[] outputReader(){
+        OutputReader reader = hasher.finalizeXof();
+        reader.fill(output);
+        return output;
+    }
+}
@@ -0,0 +1,417 @@
+package io.github.rctcwyvrn.blake3.cli;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3Backend;
+import io.github.rctcwyvrn.blake3.KeyDerivationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line tool with the output, options and check format of b3sum:
+ * <pre>
+ * java -jar b3sum.jar [--length N] [--keyed | --derive-key CONTEXT] [--no-mmap] [--num-threads N] [--no-names]
+ *                     [--raw] [--summary] [FILE]...
+ * java -jar b3sum.jar --check [--quiet] [--keyed | --derive-key CONTEXT] [CHECKFILE]...
+ * </pre>
+ * With no files, or with -, standard input is hashed. Files are hashed concurrently on a pool of --num-threads threads,
+ * and files large enough to be worth it are memory mapped and split across the same pool, unless --no-mmap is given.
+ * Hashes are printed in the order of the arguments. --summary adds the number of bytes hashed and the throughput on
+ * standard error, so that runs can be compared with the native b3sum without changing its standard output.
+ */
+public final class B3Sum {
+    private static final String NAME = "b3sum";
+    private static final String STDIN = "-";
+    // Files shorter than this are read rather than mapped, like b3sum
+    private static final long MIN_MMAP_LEN = 16 * 1024;
+    private static final int READ_BUFFER_LEN = 64 * 1024;
+    private static final int DEFAULT_LENGTH = 32;
+
+    private int length = DEFAULT_LENGTH;
+    private byte[] key;
+    private KeyDerivationContext context;
+    private boolean mmap = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean names = true;
+    private boolean raw;
+    private boolean summary;
+    private boolean check;
+    private boolean quiet;
+    private final List<String> inputs = new ArrayList<>();
+
+    private final InputStream stdin;
+    private final PrintStream stdout;
+    private final PrintStream stderr;
+    private final AtomicLong bytesHashed = new AtomicLong();
+    private ForkJoinPool pool;
+
+    // Thrown for invalid arguments, which exit with status 2 like the native tool
+    private static class UsageException extends Exception {
+        UsageException(String message){
+            super(message);
+        }
+    }
+
+    private B3Sum(InputStream stdin, PrintStream stdout, PrintStream stderr){
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public static void main(String[] args){
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    // Runs the tool with the given standard streams and returns its exit status: 0 on success, 1 if an input couldn't
+    // be hashed or a check failed, 2 for invalid arguments
+    static int run(String[] args, InputStream stdin, PrintStream stdout, PrintStream stderr){
+        B3Sum b3sum = new B3Sum(stdin, stdout, stderr);
+        try {
+            b3sum.parse(args);
+            return b3sum.run();
+        } catch (UsageException e){
+            stderr.println(NAME + ": " + e.getMessage());
+            stderr.println("Usage: " + NAME + " [--length N] [--keyed | --derive-key CONTEXT] [--no-mmap]"
+                    + " [--num-threads N] [--no-names] [--raw] [--summary] [--check [--quiet]] [FILE]...");
+            return 2;
+        } catch (IOException | UncheckedIOException e){
+            stderr.println(NAME + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void parse(String[] args) throws UsageException, IOException {
+        boolean keyed = false;
+        boolean options = true;
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(!options || !arg.startsWith("-") || arg.equals(STDIN)){
+                inputs.add(arg);
+                continue;
+            }
+            switch(arg){
+                case "--":
+                    options = false;
+                    break;
+                case "-l":
+                case "--length":
+                    length = positive(arg, value(args, ++i, arg));
+                    break;
+                case "--keyed":
+                    keyed = true;
+                    break;
+                case "--derive-key":
+                    context = KeyDerivationContext.of(value(args, ++i, arg));
+                    break;
+                case "--no-mmap":
+                    mmap = false;
+                    break;
+                case "--num-threads":
+                    threads = positive(arg, value(args, ++i, arg));
+                    break;
+                case "--no-names":
+                    names = false;
+                    break;
+                case "--raw":
+                    raw = true;
+                    break;
+                case "--summary":
+                    summary = true;
+                    break;
+                case "-c":
+                case "--check":
+                    check = true;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    throw new UsageException("unknown option " + arg);
+            }
+        }
+        if(keyed && context != null){
+            throw new UsageException("--keyed and --derive-key can't be combined");
+        }
+        if(check && (length != DEFAULT_LENGTH || raw || !names)){
+            throw new UsageException("--check can't be combined with --length, --raw or --no-names");
+        }
+        if(quiet && !check){
+            throw new UsageException("--quiet is only valid with --check");
+        }
+        if(inputs.isEmpty()){
+            inputs.add(STDIN);
+        }
+        if(raw && inputs.size() > 1){
+            throw new UsageException("--raw is only valid with a single input");
+        }
+        if(keyed){
+            if(inputs.contains(STDIN)){
+                throw new UsageException("the key is read from standard input, which can't also be hashed");
+            }
+            key = stdin.readAllBytes();
+            if(key.length != 32){
+                throw new UsageException("the key must be exactly 32 bytes, got " + key.length);
+            }
+        }
+    }
+
+    private static String value(String[] args, int i, String option) throws UsageException {
+        if(i >= args.length) throw new UsageException(option + " needs a value");
+        return args[i];
+    }
+
+    private static int positive(String option, String value) throws UsageException {
+        try {
+            int parsed = Integer.parseInt(value);
+            if(parsed > 0) return parsed;
+        } catch (NumberFormatException e){
+            // Reported below
+        }
+        throw new UsageException(option + " must be a positive integer, got " + value);
+    }
+
+    private int run() throws IOException {
+        pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        PrintStream out = new PrintStream(stdout, false);
+        int status;
+        try {
+            status = check ? checkAll(out) : hashAll(out);
+        } finally {
+            out.flush();
+            pool.shutdown();
+        }
+        if(summary){
+            printSummary(System.nanoTime() - start);
+        }
+        return status;
+    }
+
+    // Print the hash of every input, in the order of the arguments
+    private int hashAll(PrintStream out) throws IOException {
+        List<Future<byte[]>> hashes = submitAll(inputs);
+        int status = 0;
+        for(int i = 0; i < inputs.size(); i++){
+            String input = inputs.get(i);
+            byte[] hash;
+            try {
+                hash = result(hashes.get(i));
+            } catch (IOException e){
+                stderr.println(NAME + ": " + input + ": " + describe(e));
+                status = 1;
+                continue;
+            }
+            if(raw){
+                out.write(hash);
+            } else if(!names){
+                out.print(hex(hash) + "\n");
+            } else {
+                String escaped = escape(input);
+                out.print((escaped.equals(input) ? "" : "\\") + hex(hash) + "  " + escaped + "\n");
+            }
+        }
+        return status;
+    }
+
+    // Hash the files listed in every check file and compare them with the listed hashes
+    private int checkAll(PrintStream out) throws IOException {
+        List<String> paths = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        int status = 0;
+        for(String checkFile : inputs){
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(open(checkFile)))){
+                String line;
+                int lineNumber = 0;
+                while((line = reader.readLine()) != null){
+                    lineNumber++;
+                    if(!parseCheckLine(line, paths, expected)){
+                        stderr.println(NAME + ": " + checkFile + ": invalid line " + lineNumber);
+                        status = 1;
+                    }
+                }
+            } catch (NoSuchFileException e){
+                stderr.println(NAME + ": " + checkFile + ": " + describe(e));
+                status = 1;
+            }
+        }
+
+        List<Future<byte[]>> hashes = submitAll(paths);
+        int failures = 0;
+        for(int i = 0; i < paths.size(); i++){
+            String path = paths.get(i);
+            String escaped = escape(path);
+            String name = (escaped.equals(path) ? "" : "\\") + escaped;
+            try {
+                if(hex(result(hashes.get(i))).equals(expected.get(i))){
+                    if(!quiet) out.print(name + ": OK\n");
+                } else {
+                    out.print(name + ": FAILED\n");
+                    failures++;
+                }
+            } catch (IOException e){
+                out.print(name + ": FAILED (" + describe(e) + ")\n");
+                failures++;
+            }
+        }
+        out.flush();
+        if(failures > 0){
+            stderr.println(NAME + ": WARNING: " + failures + " computed checksum" + (failures == 1 ? "" : "s")
+                    + " did NOT match");
+            status = 1;
+        }
+        return status;
+    }
+
+    // Lines are "<hex>  <path>", with a leading backslash when the path is escaped
+    static boolean parseCheckLine(String line, List<String> paths, List<String> expected){
+        boolean escaped = line.startsWith("\\");
+        if(escaped) line = line.substring(1);
+        int separator = line.indexOf("  ");
+        if(separator != 2 * DEFAULT_LENGTH) return false;
+        String hash = line.substring(0, separator);
+        if(!hash.matches("[0-9a-f]+")) return false;
+        String path = line.substring(separator + 2);
+        if(escaped){
+            path = unescape(path);
+            if(path == null) return false;
+        }
+        paths.add(path);
+        expected.add(hash);
+        return true;
+    }
+
+    private List<Future<byte[]>> submitAll(List<String> inputs){
+        List<Future<byte[]>> hashes = new ArrayList<>(inputs.size());
+        for(String input : inputs){
+            hashes.add(pool.submit(() -> hash(input)));
+        }
+        return hashes;
+    }
+
+    private static byte[] result(Future<byte[]> hash) throws IOException {
+        try {
+            return hash.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private Blake3 newHasher(){
+        if(key != null) return Blake3.newKeyedHasher(key);
+        if(context != null) return Blake3.newKeyDerivationHasher(context);
+        return Blake3.newInstance();
+    }
+
+    // Runs on the pool
+    private byte[] hash(String input){
+        Blake3 hasher = newHasher();
+        try {
+            if(input.equals(STDIN)){
+                updateStream(hasher, stdin);
+            } else if(mmap){
+                try(FileChannel channel = FileChannel.open(Paths.get(input), StandardOpenOption.READ)){
+                    long size = channel.size();
+                    if(size < MIN_MMAP_LEN){
+                        updateStream(hasher, Channels.newInputStream(channel));
+                    } else {
+                        // Falls back to reading for files that can't be mapped
+                        hasher.updateParallel(channel, pool, Blake3.DEFAULT_PARALLEL_SPLIT_LEN);
+                        bytesHashed.addAndGet(channel.position());
+                    }
+                }
+            } else {
+                try(InputStream stream = Files.newInputStream(Paths.get(input))){
+                    updateStream(hasher, stream);
+                }
+            }
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return hasher.digest(length);
+    }
+
+    private void updateStream(Blake3 hasher, InputStream stream) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_LEN];
+        int read;
+        while((read = stream.read(buffer)) != -1){
+            hasher.update(buffer, 0, read);
+            bytesHashed.addAndGet(read);
+        }
+    }
+
+    private InputStream open(String input) throws IOException {
+        return input.equals(STDIN) ? stdin : Files.newInputStream(Paths.get(input));
+    }
+
+    private void printSummary(long nanos){
+        double seconds = nanos / 1e9;
+        double mebibytes = bytesHashed.get() / (1024.0 * 1024.0);
+        stderr.printf("%s: %d input%s, %.1f MiB in %.3f s, %.1f MiB/s (%d thread%s, %s backend, %s)%n",
+                NAME, inputs.size(), inputs.size() == 1 ? "" : "s", mebibytes, seconds, mebibytes / seconds,
+                threads, threads == 1 ? "" : "s", Blake3Backend.selected().name(), mmap ? "mmap" : "no mmap");
+    }
+
+    private static String describe(IOException e){
+        if(e instanceof NoSuchFileException) return "No such file or directory";
+        return e.getMessage() == null ? e.toString() : e.getMessage();
+    }
+
+    // b3sum escapes backslashes and newlines in names, and marks such lines with a leading backslash
+    static String escape(String name){
+        if(name.indexOf('\\') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0) return name;
+        return name.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    // The inverse of escape, or null if the name contains an unknown escape
+    static String unescape(String name){
+        StringBuilder unescaped = new StringBuilder(name.length());
+        for(int i = 0; i < name.length(); i++){
+            char c = name.charAt(i);
+            if(c != '\\'){
+                unescaped.append(c);
+                continue;
+            }
+            if(++i == name.length()) return null;
+            switch(name.charAt(i)){
+                case '\\': unescaped.append('\\'); break;
+                case 'n': unescaped.append('\n'); break;
+                case 'r': unescaped.append('\r'); break;
+                default: return null;
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private static String hex(byte[] bytes){
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[2 * bytes.length];
+        for(int i = 0; i < bytes.length; i++){
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
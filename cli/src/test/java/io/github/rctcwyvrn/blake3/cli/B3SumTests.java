@@ -0,0 +1,263 @@
+package io.github.rctcwyvrn.blake3.cli;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+// Expected outputs are those of the native b3sum, which match the test vectors of the BLAKE3 repository
+public class B3SumTests {
+    private static final String KEY = "whats the Elvish word for friend";
+    private static final String CONTEXT = "BLAKE3 2019-12-27 16:29:52 test vectors context";
+
+    // 131 byte outputs for the test vector inputs of 0, 1023 and 31744 bytes, the last one is long enough to be mapped
+    private static final int[] LENGTHS = {0, 1023, 31744};
+    private static final String[] HASHES = {
+            "af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262e00f03e7b69af26b7faaf09fcd333050338ddfe085b8cc869ca98b206c08243a26f5487789e8f660afe6c99ef9e0c52b92e7393024a80459cf91f476f9ffdbda7001c22e159b402631f277ca96f2defdf1078282314e763699a31c5363165421cce14d",
+            "10108970eeda3eb932baac1428c7a2163b0e924c9a9e25b35bba72b28f70bd11a182d27a591b05592b15607500e1e8dd56bc6c7fc063715b7a1d737df5bad3339c56778957d870eb9717b57ea3d9fb68d1b55127bba6a906a4a24bbd5acb2d123a37b28f9e9a81bbaae360d58f85e5fc9d75f7c370a0cc09b6522d9c8d822f2f28f485",
+            "62b6960e1a44bcc1eb1a611a8d6235b6b4b78f32e7abc4fb4c6cdcce94895c47860cc51f2b0c28a7b77304bd55fe73af663c02d3f52ea053ba43431ca5bab7bfea2f5e9d7121770d88f70ae9649ea713087d1914f7f312147e247f87eb2d4ffef0ac978bf7b6579d57d533355aa20b8b77b13fd09748728a5cc327a8ec470f4013226f"
+    };
+    private static final String[] KEYED_HASHES = {
+            "92b2b75604ed3c761f9d6f62392c8a9227ad0ea3f09573e783f1498a4ed60d26b18171a2f22a4b94822c701f107153dba24918c4bae4d2945c20ece13387627d3b73cbf97b797d5e59948c7ef788f54372df45e45e4293c7dc18c1d41144a9758be58960856be1eabbe22c2653190de560ca3b2ac4aa692a9210694254c371e851bc8f",
+            "c951ecdf03288d0fcc96ee3413563d8a6d3589547f2c2fb36d9786470f1b9d6e890316d2e6d8b8c25b0a5b2180f94fb1a158ef508c3cde45e2966bd796a696d3e13efd86259d756387d9becf5c8bf1ce2192b87025152907b6d8cc33d17826d8b7b9bc97e38c3c85108ef09f013e01c229c20a83d9e8efac5b37470da28575fd755a10",
+            "efa53b389ab67c593dba624d898d0f7353ab99e4ac9d42302ee64cbf9939a4193a7258db2d9cd32a7a3ecfce46144114b15c2fcb68a618a976bd74515d47be08b628be420b5e830fade7c080e351a076fbc38641ad80c736c8a18fe3c66ce12f95c61c2462a9770d60d0f77115bbcd3782b593016a4e728d4c06cee4505cb0c08a42ec"
+    };
+    private static final String[] DERIVED_KEYS = {
+            "2cc39783c223154fea8dfb7c1b1660f2ac2dcbd1c1de8277b0b0dd39b7e50d7d905630c8be290dfcf3e6842f13bddd573c098c3f17361f1f206b8cad9d088aa4a3f746752c6b0ce6a83b0da81d59649257cdf8eb3e9f7d4998e41021fac119deefb896224ac99f860011f73609e6e0e4540f93b273e56547dfd3aa1a035ba6689d89a0",
+            "74a16c1c3d44368a86e1ca6df64be6a2f64cce8f09220787450722d85725dea59c413264404661e9e4d955409dfe4ad3aa487871bcd454ed12abfe2c2b1eb7757588cf6cb18d2eccad49e018c0d0fec323bec82bf1644c6325717d13ea712e6840d3e6e730d35553f59eff5377a9c350bcc1556694b924b858f329c44ee64b884ef00d",
+            "39772aef80e0ebe60596361e45b061e8f417429d529171b6764468c22928e28e9759adeb797a3fbf771b1bcea30150a020e317982bf0d6e7d14dd9f064bc11025c25f31e81bd78a921db0174f03dd481d30e93fd8e90f8b2fee209f849f2d2a52f31719a490fb0ba7aea1e09814ee912eba111a9fde9d5c274185f7bae8ba85d300a2b"
+    };
+
+    private Path directory;
+    private final List<String> files = new ArrayList<>();
+
+    // Exit status and standard output and error of a run of the tool
+    private static class Result {
+        final int status;
+        final byte[] out;
+        final String err;
+
+        Result(int status, byte[] out, String err){
+            this.status = status;
+            this.out = out;
+            this.err = err;
+        }
+
+        String out(){
+            return new String(out, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Result run(byte[] stdin, String... args){
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = B3Sum.run(args, new ByteArrayInputStream(stdin), new PrintStream(out, true),
+                new PrintStream(err, true));
+        return new Result(status, out.toByteArray(), new String(err.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static Result run(String... args){
+        return run(new byte[0], args);
+    }
+
+    private static byte[] testVectorInput(int len){
+        byte[] input = new byte[len];
+        for(int i = 0; i < len; i++){
+            input[i] = (byte) (i % 251);
+        }
+        return input;
+    }
+
+    private static String[] concat(String[] first, List<String> second){
+        String[] all = Arrays.copyOf(first, first.length + second.size());
+        for(int i = 0; i < second.size(); i++) all[first.length + i] = second.get(i);
+        return all;
+    }
+
+    // The b3sum output for the test vector files, with the given hashes truncated to length bytes
+    private String expected(String[] hashes, int length){
+        StringBuilder expected = new StringBuilder();
+        for(int i = 0; i < LENGTHS.length; i++){
+            expected.append(hashes[i], 0, 2 * length).append("  ").append(files.get(i)).append("\n");
+        }
+        return expected.toString();
+    }
+
+    @Before
+    public void createFiles() throws IOException {
+        directory = Files.createTempDirectory("b3sum");
+        for(int len : LENGTHS){
+            Path file = directory.resolve("input" + len);
+            Files.write(file, testVectorInput(len));
+            files.add(file.toString());
+        }
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        try(Stream<Path> paths = Files.walk(directory)){
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator){
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testHash(){
+        Result result = run(files.toArray(new String[0]));
+        assertEquals(0, result.status);
+        assertEquals(expected(HASHES, 32), result.out());
+        assertEquals("", result.err);
+
+        assertEquals(expected(HASHES, 32), run(concat(new String[]{"--no-mmap", "--num-threads", "1"}, files)).out());
+        assertEquals(expected(HASHES, 131), run(concat(new String[]{"--length", "131"}, files)).out());
+        assertEquals(expected(HASHES, 10), run(concat(new String[]{"-l", "10"}, files)).out());
+
+        Result stdin = run(testVectorInput(1023));
+        assertEquals(HASHES[1].substring(0, 64) + "  -\n", stdin.out());
+        assertEquals(HASHES[0].substring(0, 64) + "\n", run(new byte[0], "--no-names", "-").out());
+
+        Result raw = run("--raw", "--length", "131", files.get(2));
+        assertEquals(HASHES[2], hex(raw.out));
+    }
+
+    @Test
+    public void testKeyedAndDerivedKey(){
+        byte[] key = KEY.getBytes(StandardCharsets.US_ASCII);
+        Result keyed = run(key, concat(new String[]{"--keyed", "--length", "131"}, files));
+        assertEquals(0, keyed.status);
+        assertEquals(expected(KEYED_HASHES, 131), keyed.out());
+        assertEquals(expected(KEYED_HASHES, 32), run(key, concat(new String[]{"--keyed"}, files)).out());
+
+        Result derived = run(concat(new String[]{"--derive-key", CONTEXT, "--length", "131"}, files));
+        assertEquals(0, derived.status);
+        assertEquals(expected(DERIVED_KEYS, 131), derived.out());
+    }
+
+    @Test
+    public void testEscape(){
+        for(String name : new String[]{"plain", "back\\slash", "new\nline", "carriage\rreturn", "\\n", "\\\n\r\\", ""}){
+            String escaped = B3Sum.escape(name);
+            assertEquals(name, B3Sum.unescape(escaped));
+            assertFalse(escaped.contains("\n") || escaped.contains("\r"));
+        }
+        assertEquals("plain", B3Sum.escape("plain"));
+        assertEquals("a\\\\b\\nc\\rd", B3Sum.escape("a\\b\nc\rd"));
+        assertNull(B3Sum.unescape("unknown\\t"));
+        assertNull(B3Sum.unescape("trailing\\"));
+    }
+
+    @Test
+    public void testParseCheckLine(){
+        String hash = HASHES[0].substring(0, 64);
+        List<String> paths = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        assertTrue(B3Sum.parseCheckLine(hash + "  some file", paths, expected));
+        assertTrue(B3Sum.parseCheckLine("\\" + hash + "  a\\\\b\\nc", paths, expected));
+        // Without the leading marker escapes are taken literally
+        assertTrue(B3Sum.parseCheckLine(hash + "  a\\nb", paths, expected));
+        assertEquals(Arrays.asList("some file", "a\\b\nc", "a\\nb"), paths);
+        assertEquals(Arrays.asList(hash, hash, hash), expected);
+
+        assertFalse(B3Sum.parseCheckLine(hash + " one space", paths, expected));
+        assertFalse(B3Sum.parseCheckLine(hash.substring(2) + "  short hash", paths, expected));
+        assertFalse(B3Sum.parseCheckLine(hash.toUpperCase() + "  upper case", paths, expected));
+        assertFalse(B3Sum.parseCheckLine("\\" + hash + "  bad\\escape", paths, expected));
+        assertFalse(B3Sum.parseCheckLine("", paths, expected));
+        assertEquals(3, paths.size());
+    }
+
+    @Test
+    public void testCheck() throws IOException {
+        Path escapedName = directory.resolve("new\nline");
+        Files.write(escapedName, testVectorInput(1023));
+        files.add(escapedName.toString());
+        Result hashed = run(files.toArray(new String[0]));
+        assertTrue(hashed.out().startsWith(expected(HASHES, 32)));
+        assertTrue(hashed.out().endsWith("\\" + HASHES[1].substring(0, 64) + "  " + B3Sum.escape(escapedName.toString()) + "\n"));
+        Path sums = directory.resolve("SUMS");
+        Files.write(sums, hashed.out);
+
+        Result check = run("--check", sums.toString());
+        assertEquals(0, check.status);
+        StringBuilder ok = new StringBuilder();
+        for(int i = 0; i < LENGTHS.length; i++) ok.append(files.get(i)).append(": OK\n");
+        ok.append("\\").append(B3Sum.escape(escapedName.toString())).append(": OK\n");
+        assertEquals(ok.toString(), check.out());
+        Result empty = run(new byte[0], "-c", "-");
+        assertEquals(0, empty.status);
+        assertEquals("", empty.out());
+
+        Result quiet = run("-c", "--quiet", sums.toString());
+        assertEquals(0, quiet.status);
+        assertEquals("", quiet.out());
+
+        // A changed file, a missing file and an invalid line each fail the check
+        Files.write(Path.of(files.get(1)), testVectorInput(1022));
+        Files.delete(Path.of(files.get(2)));
+        Files.write(sums, Arrays.asList(new String(hashed.out, StandardCharsets.UTF_8).trim(), "not a hash line"));
+        Result failed = run("--check", "--quiet", sums.toString());
+        assertEquals(1, failed.status);
+        assertEquals(files.get(1) + ": FAILED\n" + files.get(2) + ": FAILED (No such file or directory)\n", failed.out());
+        assertTrue(failed.err.contains("invalid line 5"));
+        assertTrue(failed.err.contains("2 computed checksums did NOT match"));
+    }
+
+    @Test
+    public void testExitStatus(){
+        // Invalid arguments exit with 2 and print the usage
+        String[][] usage = {
+                {"--keyed", "--derive-key", CONTEXT, "file"},
+                {"--check", "--length", "64", "SUMS"},
+                {"--check", "--raw", "SUMS"},
+                {"--check", "--no-names", "SUMS"},
+                {"--quiet", "file"},
+                {"--raw", "a", "b"},
+                {"--length", "0", "file"},
+                {"--num-threads", "x", "file"},
+                {"--length"},
+                {"--unknown"},
+                {"--keyed"},
+                {"--keyed", "-"}
+        };
+        for(String[] args : usage){
+            Result result = run(KEY.getBytes(StandardCharsets.US_ASCII), args);
+            assertEquals(String.join(" ", args), 2, result.status);
+            assertTrue(result.err.contains("Usage: b3sum"));
+            assertEquals(0, result.out.length);
+        }
+        assertEquals(2, run("too short".getBytes(StandardCharsets.US_ASCII), "--keyed", files.get(0)).status);
+
+        // Inputs that can't be read exit with 1, the others are still hashed
+        String missing = directory.resolve("missing").toString();
+        Result result = run(files.get(0), missing);
+        assertEquals(1, result.status);
+        assertEquals(HASHES[0].substring(0, 64) + "  " + files.get(0) + "\n", result.out());
+        assertEquals("b3sum: " + missing + ": No such file or directory" + System.lineSeparator(), result.err);
+
+        // Everything after -- is an input
+        assertEquals(1, run("--", "--length").status);
+    }
+
+    private static String hex(byte[] bytes){
+        StringBuilder hex = new StringBuilder();
+        for(byte b : bytes){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
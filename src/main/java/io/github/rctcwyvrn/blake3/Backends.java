@@ -0,0 +1,65 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+// Discovery and selection of the compression backends, see Blake3Backend
+final class Backends {
+    static final String BACKEND_PROPERTY = "blake3.backend";
+    private static final String VECTOR_BACKEND = "io.github.rctcwyvrn.blake3.VectorBackend";
+
+    static final List<Blake3Backend> AVAILABLE = loadBackends();
+    static final Blake3Backend SELECTED = select(System.getProperty(BACKEND_PROPERTY));
+
+    private Backends(){
+    }
+
+    private static List<Blake3Backend> loadBackends(){
+        List<Blake3Backend> backends = new ArrayList<>();
+        if(NativeBackend.load()){
+            backends.add(new NativeBackend());
+        }
+        Blake3Backend vector = loadVectorBackend();
+        if(vector != null){
+            backends.add(vector);
+        }
+        try {
+            for(Blake3Backend backend : ServiceLoader.load(Blake3Backend.class)){
+                backends.add(backend);
+            }
+        } catch (ServiceConfigurationError e){
+            // A broken service doesn't prevent hashing with the other backends
+        }
+        backends.add(new JavaBackend());
+        return Collections.unmodifiableList(backends);
+    }
+
+    // The vector backend is only in the Java 17+ layer of the jar, and needs jdk.incubator.vector to be resolved
+    private static Blake3Backend loadVectorBackend(){
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()){
+            return null;
+        }
+        try {
+            return (Blake3Backend) Class.forName(VECTOR_BACKEND).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e){
+            return null;
+        }
+    }
+
+    // The named backend if it is available, the fastest one otherwise
+    private static Blake3Backend select(String name){
+        if(name != null){
+            for(Blake3Backend backend : AVAILABLE){
+                if(backend.name().equals(name)){
+                    return backend;
+                }
+            }
+            System.getLogger(Backends.class.getName()).log(System.Logger.Level.WARNING,
+                    "BLAKE3 backend " + name + " is not available, using " + AVAILABLE.get(0).name());
+        }
+        return AVAILABLE.get(0);
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bao style outboard encoding of the BLAKE3 tree of some content: the chaining values of the tree stored separately from
+ * the content, so that the content can be verified against its root hash piece by piece as it arrives, or a byte range of
+ * it can be verified without hashing the rest of the content.
+ * <br><br>
+ * The encoding is an 8 byte little endian content length, followed by every parent node of the tree in pre-order, each
+ * stored as the 32 byte chaining values of its left and right children. The leaves of the tree are chunk groups of
+ * 2^chunkGroupLog chunks (1 KiB each), with the last group possibly shorter. With a chunkGroupLog of 0 this is the outboard
+ * format of Bao, larger groups make the outboard smaller (64 bytes per group) at the cost of coarser verification.
+ * Only the default (unkeyed) hash mode is supported.
+ */
+public final class BaoOutboard {
+    private static final int HEADER_LEN = 8;
+    private static final int PARENT_LEN = 64;
+    private static final int MAX_CHUNK_GROUP_LOG = 20;
+
+    private final byte[] encoded;
+    private final long contentLen;
+    private final int chunkGroupLog;
+    private final int groupLen;
+
+    private BaoOutboard(byte[] encoded, long contentLen, int chunkGroupLog){
+        this.encoded = encoded;
+        this.contentLen = contentLen;
+        this.chunkGroupLog = chunkGroupLog;
+        this.groupLen = groupLen(chunkGroupLog);
+    }
+
+    /**
+     * Encode the outboard tree of the content, using chunk groups of one chunk
+     * @param content Content to be encoded
+     * @return The outboard tree
+     */
+    public static BaoOutboard encode(byte[] content){
+        return encode(ByteBuffer.wrap(content), 0);
+    }
+
+    /**
+     * Encode the outboard tree of the bytes between the position and the limit of the buffer
+     * @param content Heap, direct or mapped buffer holding the content
+     * @param chunkGroupLog Log2 of the number of chunks per leaf of the tree
+     * @return The outboard tree
+     */
+    public static BaoOutboard encode(ByteBuffer content, int chunkGroupLog){
+        int base = content.position();
+        try {
+            return encode(content.remaining(), chunkGroupLog, (offset, len, chunkCounter, cv) ->
+                    Blake3.subtreeChainingValue(content, base + (int) offset, len, chunkCounter, Blake3.IV, 0, cv));
+        } catch (IOException e){
+            // Hashing an in memory buffer doesn't do any I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode the outboard tree of the whole file, reading it one chunk group at a time
+     * @param channel Channel of the file
+     * @param chunkGroupLog Log2 of the number of chunks per leaf of the tree
+     * @return The outboard tree
+     * @throws IOException If the file cannot be read
+     */
+    public static BaoOutboard encode(FileChannel channel, int chunkGroupLog) throws IOException {
+        ByteBuffer group = ByteBuffer.allocateDirect(groupLen(chunkGroupLog));
+        return encode(channel.size(), chunkGroupLog, (offset, len, chunkCounter, cv) -> {
+            group.clear().limit(len);
+            while(group.hasRemaining()){
+                if(channel.read(group, offset + group.position()) == -1){
+                    throw new IOException("File is shorter than its size");
+                }
+            }
+            Blake3.subtreeChainingValue(group, 0, len, chunkCounter, Blake3.IV, 0, cv);
+        });
+    }
+
+    /**
+     * Wrap an existing outboard encoding
+     * @param encoded The encoded outboard tree, as returned by {@link #toByteArray()}
+     * @param chunkGroupLog Log2 of the number of chunks per leaf of the tree it was encoded with
+     * @return The outboard tree
+     * @throws IllegalArgumentException If the encoding is too short or too long for the content length in its header
+     */
+    public static BaoOutboard wrap(byte[] encoded, int chunkGroupLog){
+        if(encoded.length < HEADER_LEN) throw new IllegalArgumentException("Outboard encoding is missing its header");
+        long contentLen = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN).getLong(0);
+        if(contentLen < 0 || encodedLen(contentLen, chunkGroupLog) != encoded.length){
+            throw new IllegalArgumentException("Outboard encoding doesn't match its content length of " + contentLen);
+        }
+        return new BaoOutboard(encoded.clone(), contentLen, chunkGroupLog);
+    }
+
+    /**
+     * @return The length of the content this tree was encoded from
+     */
+    public long contentLength(){
+        return contentLen;
+    }
+
+    /**
+     * @return Log2 of the number of chunks per leaf of the tree
+     */
+    public int chunkGroupLog(){
+        return chunkGroupLog;
+    }
+
+    /**
+     * @return The encoded outboard tree
+     */
+    public byte[] toByteArray(){
+        return encoded.clone();
+    }
+
+    /**
+     * Verify a range of the content against the root hash, hashing only the range and the parents above it
+     * @param rootHash The trusted 32 byte BLAKE3 hash of the whole content
+     * @param offset Offset of the range in the content, which must be a multiple of the chunk group length
+     * @param data The bytes of the range
+     * @param dataOffset Offset of the range in data
+     * @param len Length of the range, which must be a multiple of the chunk group length unless the range ends at the end of
+     *            the content
+     * @throws IOException If the range or the tree above it doesn't match the root hash
+     * @throws IllegalArgumentException If the range is not aligned to chunk groups or not within the content
+     */
+    public void verify(byte[] rootHash, long offset, byte[] data, int dataOffset, int len) throws IOException {
+        Objects.checkFromIndexSize(dataOffset, len, data.length);
+        if(offset < 0 || offset + len > contentLen) throw new IllegalArgumentException("Range is not within the content");
+        if(offset % groupLen != 0 || (len % groupLen != 0 && offset + len != contentLen)){
+            throw new IllegalArgumentException("Range is not aligned to chunk groups of " + groupLen + " bytes");
+        }
+        if(len == 0 && contentLen != 0){
+            return;
+        }
+        ByteBuffer range = ByteBuffer.wrap(data, dataOffset, len).slice();
+        verifyNode(rootHash, null, 0, contentLen, HEADER_LEN, offset, range);
+    }
+
+    // Verify the node covering [start, start + nodeLen) of the content, whose parent record (if any) is at position in the
+    // encoding, against either the root hash or its expected CV, descending only into the children overlapping the range
+    private void verifyNode(byte[] rootHash, int[] expectedCV, long start, long nodeLen, int position,
+                            long rangeStart, ByteBuffer range) throws IOException {
+        if(nodeLen <= groupLen){
+            int index = (int) (start - rangeStart);
+            verifyGroup(range, index, (int) nodeLen, start, rootHash, expectedCV);
+            return;
+        }
+        int[] leftCV = new int[8];
+        int[] rightCV = new int[8];
+        Blake3.wordsFromLEBytes(encoded, position, leftCV, 8);
+        Blake3.wordsFromLEBytes(encoded, position + 32, rightCV, 8);
+        verifyParent(leftCV, rightCV, rootHash, expectedCV, start);
+
+        long leftLen = leftSubtreeLen(nodeLen);
+        long rightStart = start + leftLen;
+        long rangeEnd = rangeStart + range.remaining();
+        if(rangeStart < rightStart){
+            verifyNode(null, leftCV, start, leftLen, position + PARENT_LEN, rangeStart, range);
+        }
+        if(rangeEnd > rightStart){
+            int rightPosition = position + PARENT_LEN * (int) groupCount(leftLen, groupLen);
+            verifyNode(null, rightCV, rightStart, nodeLen - leftLen, rightPosition, rangeStart, range);
+        }
+    }
+
+    /**
+     * Wrap the content in a stream that verifies every chunk group against the root hash before returning any of its bytes,
+     * using this tree
+     * @param rootHash The trusted 32 byte BLAKE3 hash of the whole content
+     * @param content The untrusted content
+     * @return A stream of the verified content, which throws an IOException at the first chunk group that doesn't match
+     */
+    public InputStream verifyingStream(byte[] rootHash, InputStream content){
+        return new BaoVerifyingInputStream(rootHash, new ByteArrayInputStream(encoded), content, chunkGroupLog);
+    }
+
+    // Computes the CV of the chunk group at the given content offset, which starts at the given chunk counter
+    interface GroupHasher {
+        void chainingValue(long offset, int len, long chunkCounter, int[] cv) throws IOException;
+    }
+
+    private static BaoOutboard encode(long contentLen, int chunkGroupLog, GroupHasher groups) throws IOException {
+        byte[] encoded = new byte[encodedLen(contentLen, chunkGroupLog)];
+        ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN).putLong(0, contentLen);
+        int groupLen = groupLen(chunkGroupLog);
+        if(contentLen > groupLen){
+            encodeNode(encoded, HEADER_LEN, 0, contentLen, groupLen, groups, new int[8]);
+        }
+        return new BaoOutboard(encoded, contentLen, chunkGroupLog);
+    }
+
+    // Writes the parents of the subtree in pre-order starting at position, and its CV to cv.
+    // Returns the position after the subtree.
+    private static int encodeNode(byte[] encoded, int position, long start, long nodeLen, int groupLen,
+                                  GroupHasher groups, int[] cv) throws IOException {
+        if(nodeLen <= groupLen){
+            groups.chainingValue(start, (int) nodeLen, start / Blake3.CHUNK_LEN, cv);
+            return position;
+        }
+        long leftLen = leftSubtreeLen(nodeLen);
+        int[] leftCV = new int[8];
+        int end = encodeNode(encoded, position + PARENT_LEN, start, leftLen, groupLen, groups, leftCV);
+        end = encodeNode(encoded, end, start + leftLen, nodeLen - leftLen, groupLen, groups, cv);
+        Blake3.wordsToLEBytes(leftCV, encoded, position, 32);
+        Blake3.wordsToLEBytes(cv, encoded, position + 32, 32);
+        Blake3.parentChainingValue(leftCV, cv, Blake3.IV, 0, cv);
+        return end;
+    }
+
+    // Checks a parent record against the root hash if it is the root, or against the CV expected by its own parent
+    static void verifyParent(int[] leftCV, int[] rightCV, byte[] rootHash, int[] expectedCV, long start) throws IOException {
+        if(rootHash != null){
+            byte[] hash = new byte[32];
+            Blake3.parentRootOutputBytes(leftCV, rightCV, Blake3.IV, 0, hash, 0, 32);
+            check(MessageDigest.isEqual(hash, rootHash), start);
+        } else {
+            int[] cv = new int[8];
+            Blake3.parentChainingValue(leftCV, rightCV, Blake3.IV, 0, cv);
+            check(Arrays.equals(cv, expectedCV), start);
+        }
+    }
+
+    // Checks the bytes of a chunk group starting at the given content offset, as the root if it is the whole content
+    static void verifyGroup(ByteBuffer data, int index, int len, long start, byte[] rootHash, int[] expectedCV) throws IOException {
+        if(rootHash != null){
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(data.duplicate().position(index).limit(index + len));
+            check(MessageDigest.isEqual(hasher.digest(), rootHash), start);
+        } else {
+            int[] cv = new int[8];
+            Blake3.subtreeChainingValue(data, index, len, start / Blake3.CHUNK_LEN, Blake3.IV, 0, cv);
+            check(Arrays.equals(cv, expectedCV), start);
+        }
+    }
+
+    private static void check(boolean matches, long start) throws IOException {
+        if(!matches) throw new IOException("Content at offset " + start + " does not match the root hash");
+    }
+
+    // The left subtree holds the largest power of two number of chunks that leaves at least one byte for the right one
+    static long leftSubtreeLen(long nodeLen){
+        long chunks = (nodeLen + Blake3.CHUNK_LEN - 1) / Blake3.CHUNK_LEN;
+        return Long.highestOneBit(chunks - 1) * Blake3.CHUNK_LEN;
+    }
+
+    static int groupLen(int chunkGroupLog){
+        if(chunkGroupLog < 0 || chunkGroupLog > MAX_CHUNK_GROUP_LOG){
+            throw new IllegalArgumentException("Chunk group log must be between 0 and " + MAX_CHUNK_GROUP_LOG);
+        }
+        return Blake3.CHUNK_LEN << chunkGroupLog;
+    }
+
+    static long groupCount(long contentLen, int groupLen){
+        return Math.max(1, (contentLen + groupLen - 1) / groupLen);
+    }
+
+    static int encodedLen(long contentLen, int chunkGroupLog){
+        long len = HEADER_LEN + PARENT_LEN * (groupCount(contentLen, groupLen(chunkGroupLog)) - 1);
+        if(len > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Outboard encoding would be too large, use larger chunk groups");
+        return (int) len;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Streaming decoder of content with a {@link BaoOutboard} tree. The outboard tree and the content are read in step,
+ * and every chunk group of the content is verified against the trusted root hash before any of its bytes are returned,
+ * so corrupt content is detected as soon as the chunk group containing it arrives.
+ */
+public final class BaoVerifyingInputStream extends InputStream {
+    private final byte[] rootHash;
+    private final InputStream outboard;
+    private final InputStream content;
+    private final int groupLen;
+
+    // Subtrees still to be read, in pre-order
+    private final Deque<Subtree> pending = new ArrayDeque<>();
+    private final byte[] parent = new byte[64];
+    // The verified bytes of the current chunk group, between position and limit
+    private final ByteBuffer group;
+    private long contentLen = -1;
+
+    /**
+     * @param rootHash The trusted 32 byte BLAKE3 hash of the whole content
+     * @param outboard The untrusted outboard tree, as produced by {@link BaoOutboard#toByteArray()}
+     * @param content The untrusted content
+     * @param chunkGroupLog Log2 of the number of chunks per leaf of the tree it was encoded with
+     */
+    public BaoVerifyingInputStream(byte[] rootHash, InputStream outboard, InputStream content, int chunkGroupLog){
+        if(rootHash.length != 32) throw new IllegalArgumentException("Root hash must be 32 bytes");
+        this.rootHash = rootHash.clone();
+        this.outboard = outboard;
+        this.content = content;
+        this.groupLen = BaoOutboard.groupLen(chunkGroupLog);
+        this.group = ByteBuffer.allocate(groupLen);
+        this.group.limit(0);
+    }
+
+    // A subtree covering [start, start + len) of the content, with the CV expected by its parent, or the root
+    private static final class Subtree {
+        final long start;
+        final long len;
+        final int[] expectedCV;
+
+        private Subtree(long start, long len, int[] expectedCV){
+            this.start = start;
+            this.len = len;
+            this.expectedCV = expectedCV;
+        }
+    }
+
+    /**
+     * @return The length of the content, as claimed by the header of the outboard tree
+     * @throws IOException If the header cannot be read
+     */
+    public long contentLength() throws IOException {
+        if(contentLen < 0){
+            byte[] header = new byte[8];
+            readFully(outboard, header, 8, "Outboard tree");
+            contentLen = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getLong();
+            if(contentLen < 0) throw new IOException("Invalid content length " + contentLen);
+            pending.push(new Subtree(0, contentLen, null));
+        }
+        return contentLen;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!nextVerifiedBytes()){
+            return -1;
+        }
+        return group.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if(len == 0){
+            return 0;
+        }
+        if(!nextVerifiedBytes()){
+            return -1;
+        }
+        int take = Math.min(len, group.remaining());
+        group.get(b, off, take);
+        return take;
+    }
+
+    @Override
+    public int available(){
+        return group.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            content.close();
+        } finally {
+            outboard.close();
+        }
+    }
+
+    // Reads and verifies chunk groups until there are verified bytes to return, or the content is done
+    private boolean nextVerifiedBytes() throws IOException {
+        contentLength();
+        while(!group.hasRemaining()){
+            if(pending.isEmpty()){
+                return false;
+            }
+            Subtree subtree = pending.pop();
+            byte[] expectedRoot = subtree.expectedCV == null ? rootHash : null;
+            if(subtree.len <= groupLen){
+                group.clear();
+                readFully(content, group.array(), (int) subtree.len, "Content");
+                BaoOutboard.verifyGroup(group, 0, (int) subtree.len, subtree.start, expectedRoot, subtree.expectedCV);
+                group.limit((int) subtree.len);
+            } else {
+                readFully(outboard, parent, 64, "Outboard tree");
+                int[] leftCV = new int[8];
+                int[] rightCV = new int[8];
+                Blake3.wordsFromLEBytes(parent, 0, leftCV, 8);
+                Blake3.wordsFromLEBytes(parent, 32, rightCV, 8);
+                BaoOutboard.verifyParent(leftCV, rightCV, expectedRoot, subtree.expectedCV, subtree.start);
+                long leftLen = BaoOutboard.leftSubtreeLen(subtree.len);
+                pending.push(new Subtree(subtree.start + leftLen, subtree.len - leftLen, rightCV));
+                pending.push(new Subtree(subtree.start, leftLen, leftCV));
+            }
+        }
+        return true;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int len, String what) throws IOException {
+        if(in.readNBytes(buffer, 0, len) != len){
+            throw new IOException(what + " ended before the length given in the outboard header");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.rctcwyvrn.blake3;
+
+// Batch entry points of the built in backends that compress degree() lanes at once, beyond the chunk hashing of the
+// public SPI. Backends registered as services don't implement them, their extended output and hashMany inputs are
+// compressed by the scalar code.
+interface BatchBackend extends Blake3Backend {
+
+    // Write degree() consecutive 64 byte blocks of extended output of a root node to out, starting at the given output
+    // block counter. The flags already include ROOT.
+    void rootOutputBlocks(int[] chainingValue, int[] blockWords, long outputCounter, int blockLen, int flags,
+                          byte[] out, int offset);
+
+    // Hash degree() independent inputs of at most one chunk each as roots, all of them with the same number of blocks.
+    // The inputs of this batch are inputs[inputIndices[first]] to inputs[inputIndices[first + degree() - 1]], and the
+    // 32 byte hash of input i is written to outputs at offset 32 * i.
+    void hashSingleChunkRoots(byte[][] inputs, int[] inputIndices, int first, int[] key, int flags, byte[] outputs);
+
+    // The batch backend to use for a hasher's backend, or null if it doesn't batch
+    static BatchBackend of(Blake3Backend backend){
+        return backend instanceof BatchBackend && backend.degree() > 1 ? (BatchBackend) backend.newInstance() : null;
+    }
+}
@@ -4,10 +4,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Translation of the Blake3 reference implementation from Rust to Java
@@ -18,184 +27,355 @@ public class Blake3 {
     private static final char[] HEX_ARRAY = "0123456789abcdef".toCharArray();
 
     private static final int DEFAULT_HASH_LEN = 32;
-    private static final int OUT_LEN = 32;
-    private static final int KEY_LEN = 32;
-    private static final int BLOCK_LEN = 64;
-    private static final int CHUNK_LEN = 1024;
-
-    private static final int CHUNK_START = 1;
-    private static final int CHUNK_END = 2;
-    private static final int PARENT = 4;
-    private static final int ROOT = 8;
-    private static final int KEYED_HASH = 16;
-    private static final int DERIVE_KEY_CONTEXT = 32;
-    private static final int DERIVE_KEY_MATERIAL = 64;
-
-    private static final int[] IV = {
+    static final int OUT_LEN = 32;
+    static final int KEY_LEN = 32;
+    static final int BLOCK_LEN = 64;
+    static final int CHUNK_LEN = 1024;
+    private static final int MAX_DEPTH = 54;
+    // Encoding of saved hasher states: "B3ST", a version byte, then the mode, key, chunk state and chaining value stack
+    private static final int STATE_MAGIC = 0x54534233;
+    private static final byte STATE_VERSION = 1;
+    private static final int STATE_HEADER_LEN = 4 + 1 + 1 + 32 + 8 + 32 + 1 + 1;
+
+    // Files are mapped this many bytes at a time, falling back to reads of READ_BUFFER_LEN if they can't be mapped
+    private static final long MAP_WINDOW_LEN = 1L << 28;
+    private static final int READ_BUFFER_LEN = 1 << 20;
+    // Usually the whole file was mapped and the first read after the windows hits the end of the file, so it reads into
+    // this buffer and the read buffer is only allocated once it returns data
+    private static final ThreadLocal<ByteBuffer> PROBE_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BLOCK_LEN));
+
+    /**
+     * The default minimum subtree size, in bytes, that {@link #updateParallel(byte[])} hands to another thread
+     */
+    public static final int DEFAULT_PARALLEL_SPLIT_LEN = 128 * 1024;
+
+    static final int CHUNK_START = 1;
+    static final int CHUNK_END = 2;
+    static final int PARENT = 4;
+    static final int ROOT = 8;
+    static final int KEYED_HASH = 16;
+    static final int DERIVE_KEY_CONTEXT = 32;
+    static final int DERIVE_KEY_MATERIAL = 64;
+
+    static final int[] IV = {
             0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
     };
 
-    private static final int[] MSG_PERMUTATION = {
-            2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8
-    };
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
 
-    private static int wrappingAdd(int a, int b){
-        return (a + b);
-    }
-
-    private static int rotateRight(int x, int len){
-        return (x >>> len) | (x << (32 - len));
-    }
-
-    private static void g(int[] state, int a, int b, int c, int d, int mx, int my){
-        state[a] = wrappingAdd(wrappingAdd(state[a], state[b]), mx);
-        state[d] = rotateRight((state[d] ^ state[a]), 16);
-        state[c] = wrappingAdd(state[c], state[d]);
-        state[b] = rotateRight((state[b] ^ state[c]), 12);
-        state[a] = wrappingAdd(wrappingAdd(state[a], state[b]), my);
-        state[d] = rotateRight((state[d] ^ state[a]), 8);
-        state[c] = wrappingAdd(state[c], state[d]);
-        state[b] = rotateRight((state[b] ^ state[c]), 7);
-    }
-
-    private static void roundFn(int[] state, int[] m){
-        // Mix columns
-        g(state,0,4,8,12,m[0],m[1]);
-        g(state,1,5,9,13,m[2],m[3]);
-        g(state,2,6,10,14,m[4],m[5]);
-        g(state,3,7,11,15,m[6],m[7]);
-
-        // Mix diagonals
-        g(state,0,5,10,15,m[8],m[9]);
-        g(state,1,6,11,12,m[10],m[11]);
-        g(state,2,7,8,13,m[12],m[13]);
-        g(state,3,4,9,14,m[14],m[15]);
-    }
-
-    private static int[] permute(int[] m){
-        int[] permuted = new int[16];
-        for(int i = 0;i<16;i++){
-            permuted[i] = m[MSG_PERMUTATION[i]];
-        }
-        return permuted;
-    }
-
-    private static int[] compress(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags){
-        int counterInt = (int) (counter & 0xffffffffL);
-        int counterShift = (int) ((counter >> 32) & 0xffffffffL);
-        int[] state = {
-                chainingValue[0],
-                chainingValue[1],
-                chainingValue[2],
-                chainingValue[3],
-                chainingValue[4],
-                chainingValue[5],
-                chainingValue[6],
-                chainingValue[7],
-                IV[0],
-                IV[1],
-                IV[2],
-                IV[3],
-                counterInt,
-                counterShift,
-                blockLen,
-                flags
-        };
-        roundFn(state, blockWords);         // Round 1
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 2
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 3
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 4
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 5
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 6
-        blockWords = permute(blockWords);
-        roundFn(state, blockWords);         // Round 7
-
-        for(int i = 0; i<8; i++){
-            state[i] ^= state[i+8];
-            state[i+8] ^= chainingValue[i];
-        }
-        return state;
-    }
-
-    private static int[] wordsFromLEBytes(byte[] bytes){
-        int[] words = new int[bytes.length/4];
-        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    // Instrumentation is disabled while this is null
+    private static volatile Blake3Listener listener;
+
+    // Runs the compression function on the chaining value words and message words of the block.
+    // Writes the new 8 word chaining value to out[outOff..], followed by the 8 extended output words if xof is set.
+    // out may be the same array as chainingValue when xof is not set.
+    static void compress(int[] chainingValue, int[] m, long counter, int blockLen, int flags,
+                                 int[] out, int outOff, boolean xof){
+        compress(chainingValue[0], chainingValue[1], chainingValue[2], chainingValue[3], chainingValue[4],
+                chainingValue[5], chainingValue[6], chainingValue[7], m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7],
+                m[8], m[9], m[10], m[11], m[12], m[13], m[14], m[15], counter, blockLen, flags, out, null, outOff, xof);
+    }
+
+    // The compression function with the state held in locals and the 7 rounds unrolled, the message word order of each
+    // round being the one of the previous round with the message permutation applied. The chaining value and message
+    // words are passed as arguments rather than read here, which keeps them from being held in registers across all of
+    // the rounds. Writes the result to out as in compress(int[], int[], long, int, int, int[], int, boolean), or if out
+    // is null the new chaining value alone to outBytes[outOff..] as 32 little endian bytes.
+    private static void compress(int c0, int c1, int c2, int c3, int c4, int c5, int c6, int c7, int m0, int m1, int m2,
+                                 int m3, int m4, int m5, int m6, int m7, int m8, int m9, int m10, int m11, int m12,
+                                 int m13, int m14, int m15, long counter, int blockLen, int flags, int[] out,
+                                 byte[] outBytes, int outOff, boolean xof){
+        int v0 = c0;
+        int v1 = c1;
+        int v2 = c2;
+        int v3 = c3;
+        int v4 = c4;
+        int v5 = c5;
+        int v6 = c6;
+        int v7 = c7;
+        int v8 = IV[0];
+        int v9 = IV[1];
+        int v10 = IV[2];
+        int v11 = IV[3];
+        int v12 = (int) counter;
+        int v13 = (int) (counter >>> 32);
+        int v14 = blockLen;
+        int v15 = flags;
+
+        // Round 1
+        v0 += v4 + m0; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m1; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m2; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m3; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m4; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m5; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m6; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m7; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m8; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m9; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m10; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m11; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m12; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m13; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m14; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m15; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 2
+        v0 += v4 + m2; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m6; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m3; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m10; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m7; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m0; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m4; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m13; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m1; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m11; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m12; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m5; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m9; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m14; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m15; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m8; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 3
+        v0 += v4 + m3; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m4; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m10; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m12; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m13; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m2; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m7; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m14; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m6; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m5; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m9; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m0; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m11; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m15; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m8; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m1; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 4
+        v0 += v4 + m10; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m7; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m12; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m9; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m14; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m3; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m13; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m15; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m4; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m0; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m11; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m2; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m5; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m8; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m1; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m6; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 5
+        v0 += v4 + m12; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m13; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m9; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m11; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m15; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m10; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m14; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m8; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m7; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m2; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m5; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m3; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m0; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m1; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m6; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m4; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 6
+        v0 += v4 + m9; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m14; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m11; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m5; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m8; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m12; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m15; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m1; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m13; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m3; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m0; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m10; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m2; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m6; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m4; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m7; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        // Round 7
+        v0 += v4 + m11; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+        v0 += v4 + m15; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+        v1 += v5 + m5; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+        v1 += v5 + m0; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+        v2 += v6 + m1; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+        v2 += v6 + m9; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+        v3 += v7 + m8; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+        v3 += v7 + m6; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+        v0 += v5 + m14; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+        v0 += v5 + m10; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+        v1 += v6 + m2; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+        v1 += v6 + m12; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+        v2 += v7 + m3; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+        v2 += v7 + m4; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+        v3 += v4 + m7; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+        v3 += v4 + m13; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
 
-        for(int i=0; i<words.length; i++){
-            words[i] = buf.getInt();
+        if(out == null){
+            INT_LE.set(outBytes, outOff, v0 ^ v8);
+            INT_LE.set(outBytes, outOff + 4, v1 ^ v9);
+            INT_LE.set(outBytes, outOff + 8, v2 ^ v10);
+            INT_LE.set(outBytes, outOff + 12, v3 ^ v11);
+            INT_LE.set(outBytes, outOff + 16, v4 ^ v12);
+            INT_LE.set(outBytes, outOff + 20, v5 ^ v13);
+            INT_LE.set(outBytes, outOff + 24, v6 ^ v14);
+            INT_LE.set(outBytes, outOff + 28, v7 ^ v15);
+            return;
         }
+        if(xof){
+            out[outOff + 8] = v8 ^ c0;
+            out[outOff + 9] = v9 ^ c1;
+            out[outOff + 10] = v10 ^ c2;
+            out[outOff + 11] = v11 ^ c3;
+            out[outOff + 12] = v12 ^ c4;
+            out[outOff + 13] = v13 ^ c5;
+            out[outOff + 14] = v14 ^ c6;
+            out[outOff + 15] = v15 ^ c7;
+        }
+        out[outOff] = v0 ^ v8;
+        out[outOff + 1] = v1 ^ v9;
+        out[outOff + 2] = v2 ^ v10;
+        out[outOff + 3] = v3 ^ v11;
+        out[outOff + 4] = v4 ^ v12;
+        out[outOff + 5] = v5 ^ v13;
+        out[outOff + 6] = v6 ^ v14;
+        out[outOff + 7] = v7 ^ v15;
+    }
+
+    // Reads count little endian words from bytes[offset..] into words
+    static void wordsFromLEBytes(byte[] bytes, int offset, int[] words, int count){
+        for(int i = 0; i < count; i++){
+            words[i] = (int) INT_LE.get(bytes, offset + 4 * i);
+        }
+    }
+
+    // Reads count little endian words from the buffer at the absolute index, regardless of the buffer's byte order
+    static void wordsFromLEBytes(ByteBuffer bytes, int index, int[] words, int count){
+        for(int i = 0; i < count; i++){
+            words[i] = (int) BUFFER_INT_LE.get(bytes, index + 4 * i);
+        }
+    }
+
+    static int[] wordsFromLEBytes(byte[] bytes){
+        int[] words = new int[bytes.length/4];
+        wordsFromLEBytes(bytes, 0, words, words.length);
         return words;
     }
 
+    // Writes the first len bytes of the little endian encoding of words to out[offset..]
+    static void wordsToLEBytes(int[] words, byte[] out, int offset, int len){
+        int fullWords = len / 4;
+        for(int i = 0; i < fullWords; i++){
+            INT_LE.set(out, offset + 4 * i, words[i]);
+        }
+        for(int i = fullWords * 4; i < len; i++){
+            out[offset + i] = (byte) (words[i / 4] >>> (8 * (i % 4)));
+        }
+    }
+
+    // Same as wordsToLEBytes(int[], byte[], int, int), writing at absolute indices of a heap or direct buffer
+    private static void wordsToLEBytes(int[] words, ByteBuffer out, int index, int len){
+        int fullWords = len / 4;
+        for(int i = 0; i < fullWords; i++){
+            BUFFER_INT_LE.set(out, index + 4 * i, words[i]);
+        }
+        for(int i = fullWords * 4; i < len; i++){
+            out.put(index + i, (byte) (words[i / 4] >>> (8 * (i % 4))));
+        }
+    }
+
     // Node of the Blake3 hash tree
     // Is either chained into the next node using chainingValue()
     // Or used to calculate the hash digest using rootOutputBytes()
+    // Nodes are mutable so that a hasher can reuse one instead of allocating per chunk/parent
     private static class Node {
-        int[] inputChainingValue;
-        int[] blockWords;
+        final int[] inputChainingValue = new int[8];
+        final int[] blockWords = new int[16];
+        final int[] outputWords = new int[16];
         long counter;
         int blockLen;
         int flags;
 
-        private Node(int[] inputChainingValue, int[] blockWords, long counter, int blockLen, int flags) {
-            this.inputChainingValue = inputChainingValue;
-            this.blockWords = blockWords;
-            this.counter = counter;
-            this.blockLen = blockLen;
-            this.flags = flags;
+        // Make this node the parent of the two given child CVs
+        private void setParent(int[] leftChildCV, int leftOff, int[] rightChildCV, int rightOff, int[] key, int flags){
+            System.arraycopy(key, 0, inputChainingValue, 0, 8);
+            System.arraycopy(leftChildCV, leftOff, blockWords, 0, 8);
+            System.arraycopy(rightChildCV, rightOff, blockWords, 8, 8);
+            this.counter = 0;
+            this.blockLen = BLOCK_LEN;
+            this.flags = PARENT | flags;
         }
 
-        // Return the 8 int CV
-        private int[] chainingValue(){
-            return Arrays.copyOfRange(
-                    compress(inputChainingValue, blockWords, counter, blockLen, flags),
-                    0,8);
-        }
-
-        private byte[] rootOutputBytes(int outLen){
-            int outputCounter = 0;
-            int outputsNeeded = Math.floorDiv(outLen,(2*OUT_LEN)) + 1;
-            byte[] hash = new byte[outLen];
-            int i = 0;
-            while(outputCounter < outputsNeeded){
-                int[] words = compress(inputChainingValue, blockWords, outputCounter, blockLen,flags | ROOT );
-
-                for(int word: words){
-                    for(byte b: ByteBuffer.allocate(4)
-                            .order(ByteOrder.LITTLE_ENDIAN)
-                            .putInt(word)
-                            .array()){
-                        hash[i] = b;
-                        i+=1;
-                        if(i == outLen){
-                            return hash;
-                        }
-                    }
-                }
-                outputCounter+=1;
+        // Write the 8 int CV to out
+        private void chainingValue(int[] out){
+            compress(inputChainingValue, blockWords, counter, blockLen, flags, out, 0, false);
+        }
+
+        private void rootOutputBytes(byte[] out, int offset, int outLen){
+            long outputCounter = 0;
+            while(outLen > 0){
+                compress(inputChainingValue, blockWords, outputCounter, blockLen, flags | ROOT, outputWords, 0, true);
+                int take = Math.min(2 * OUT_LEN, outLen);
+                wordsToLEBytes(outputWords, out, offset, take);
+                offset += take;
+                outLen -= take;
+                outputCounter += 1;
+            }
+        }
+
+        private void rootOutputBytes(ByteBuffer out, int index, int outLen){
+            if(out.hasArray()){
+                rootOutputBytes(out.array(), out.arrayOffset() + index, outLen);
+                return;
+            }
+            long outputCounter = 0;
+            while(outLen > 0){
+                compress(inputChainingValue, blockWords, outputCounter, blockLen, flags | ROOT, outputWords, 0, true);
+                int take = Math.min(2 * OUT_LEN, outLen);
+                wordsToLEBytes(outputWords, out, index, take);
+                index += take;
+                outLen -= take;
+                outputCounter += 1;
             }
-            throw new IllegalStateException("Uh oh something has gone horribly wrong. Please create an issue on https://github.com/rctcwyvrn/blake3");
         }
     }
 
     // Helper object for creating new Nodes and chaining them
     private static class ChunkState {
-        int[] chainingValue;
+        final int[] chainingValue = new int[8];
+        final int[] blockWords = new int[16];
+        final byte[] block = new byte[BLOCK_LEN];
         long chunkCounter;
-        byte[] block = new byte[BLOCK_LEN];
-        byte blockLen = 0;
-        byte blocksCompressed = 0;
+        int blockLen = 0;
+        int blocksCompressed = 0;
         int flags;
+        // Blocks compressed since the hasher last reported its work to the listener
+        long unreportedCompressions;
 
-        public ChunkState(int[] key, long chunkCounter, int flags){
-            this.chainingValue = key;
-            this.chunkCounter = chunkCounter;
+        private ChunkState(int[] key, long chunkCounter, int flags){
             this.flags = flags;
+            reset(key, chunkCounter);
+        }
+
+        // Start a new chunk without reallocating any of the buffers
+        private void reset(int[] key, long chunkCounter){
+            System.arraycopy(key, 0, this.chainingValue, 0, 8);
+            this.chunkCounter = chunkCounter;
+            this.blockLen = 0;
+            this.blocksCompressed = 0;
         }
 
         public int len(){
@@ -206,64 +386,369 @@ public class Blake3 {
             return blocksCompressed == 0? CHUNK_START: 0;
         }
 
-        private void update(byte[] input) {
-            int currPos = 0;
-            while (currPos < input.length) {
+        // Chain the words currently in blockWords into this chunk
+        private void compressBlockWords(){
+            compress(chainingValue, blockWords, chunkCounter, BLOCK_LEN, flags | startFlag(), chainingValue, 0, false);
+            blocksCompressed += 1;
+            unreportedCompressions += 1;
+        }
+
+        // Chain the full block in the buffer into this chunk, once more input follows it
+        private void compressBufferedBlock(){
+            wordsFromLEBytes(block, 0, blockWords, 16);
+            compressBlockWords();
+            this.blockLen = 0;
+        }
+
+        // The caller never passes more than the bytes remaining in this chunk
+        private void update(byte[] input, int offset, int len) {
+            while (len > 0) {
 
                 // Chain the next 64 byte block into this chunk/node
                 if (blockLen == BLOCK_LEN) {
-                    int[] blockWords = wordsFromLEBytes(block);
-                    this.chainingValue = Arrays.copyOfRange(
-                            compress(this.chainingValue, blockWords, this.chunkCounter, BLOCK_LEN,this.flags | this.startFlag()),
-                            0, 8);
-                    blocksCompressed += 1;
-                    this.block = new byte[BLOCK_LEN];
-                    this.blockLen = 0;
+                    compressBufferedBlock();
+                }
+
+                // Whole blocks that are not the last bytes of the input can be compressed straight from the input
+                if (blockLen == 0 && len > BLOCK_LEN) {
+                    wordsFromLEBytes(input, offset, blockWords, 16);
+                    compressBlockWords();
+                    offset += BLOCK_LEN;
+                    len -= BLOCK_LEN;
+                    continue;
                 }
 
                 // Take bytes out of the input and update
                 int want = BLOCK_LEN - this.blockLen; // How many bytes we need to fill up the current block
-                int canTake = Math.min(want, input.length - currPos);
+                int canTake = Math.min(want, len);
 
-                System.arraycopy(input, currPos, block, blockLen, canTake);
+                System.arraycopy(input, offset, block, blockLen, canTake);
                 blockLen += canTake;
-                currPos+=canTake;
+                offset += canTake;
+                len -= canTake;
             }
         }
 
-        private Node createNode(){
-            return new Node(chainingValue, wordsFromLEBytes(block), chunkCounter, blockLen, flags | startFlag() | CHUNK_END);
+        // Same as update(byte[], int, int), reading the input at absolute indices of a heap or direct buffer
+        private void update(ByteBuffer input, int index, int len) {
+            while (len > 0) {
+                if (blockLen == BLOCK_LEN) {
+                    compressBufferedBlock();
+                }
+
+                if (blockLen == 0 && len > BLOCK_LEN) {
+                    wordsFromLEBytes(input, index, blockWords, 16);
+                    compressBlockWords();
+                    index += BLOCK_LEN;
+                    len -= BLOCK_LEN;
+                    continue;
+                }
+
+                int canTake = Math.min(BLOCK_LEN - this.blockLen, len);
+                for(int i = 0; i < canTake; i++){
+                    block[blockLen + i] = input.get(index + i);
+                }
+                blockLen += canTake;
+                index += canTake;
+                len -= canTake;
+            }
+        }
+
+        // Chain a whole block given as words after any full block that is still buffered. No partial block may be buffered.
+        private void updateBlockWords(int[] words){
+            if (blockLen == BLOCK_LEN) {
+                compressBufferedBlock();
+            }
+            if (blocksCompressed == CHUNK_LEN / BLOCK_LEN - 1) {
+                // The last block of a chunk stays buffered, it is compressed by output()
+                wordsToLEBytes(words, block, 0, BLOCK_LEN);
+                this.blockLen = BLOCK_LEN;
+                return;
+            }
+            System.arraycopy(words, 0, blockWords, 0, 16);
+            compressBlockWords();
+        }
+
+        // Load the (zero padded) final block of this chunk into the given node
+        private void output(Node node){
+            Arrays.fill(block, blockLen, BLOCK_LEN, (byte) 0);
+            wordsFromLEBytes(block, 0, node.blockWords, 16);
+            System.arraycopy(chainingValue, 0, node.inputChainingValue, 0, 8);
+            node.counter = chunkCounter;
+            node.blockLen = blockLen;
+            node.flags = flags | startFlag() | CHUNK_END;
         }
     }
 
+    // Computes the chaining value of a complete subtree of a power of two number of chunks,
+    // splitting it in half and forking until the pieces are no larger than minSplitLen
+    private static class SubtreeTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        final ByteBuffer input;
+        final int offset;
+        final int len;
+        final long chunkCounter;
+        final int[] key;
+        final int flags;
+        final int minSplitLen;
+        final Blake3Backend backend;
+
+        private SubtreeTask(ByteBuffer input, int offset, int len, long chunkCounter, int[] key, int flags, int minSplitLen,
+                            Blake3Backend backend){
+            this.input = input;
+            this.offset = offset;
+            this.len = len;
+            this.chunkCounter = chunkCounter;
+            this.key = key;
+            this.flags = flags;
+            this.minSplitLen = minSplitLen;
+            this.backend = backend;
+        }
+
+        @Override
+        protected int[] compute(){
+            if(len <= minSplitLen){
+                int[] cv = new int[8];
+                subtreeChainingValue(input, offset, len, chunkCounter, key, flags, cv, backend);
+                return cv;
+            }
+            int half = len / 2;
+            SubtreeTask left = new SubtreeTask(input, offset, half, chunkCounter, key, flags, minSplitLen, backend);
+            SubtreeTask right = new SubtreeTask(input, offset + half, half, chunkCounter + half / CHUNK_LEN, key, flags,
+                    minSplitLen, backend);
+            left.fork();
+            int[] rightCV = right.compute();
+            int[] leftCV = left.join();
+            parentChainingValue(leftCV, rightCV, key, flags, rightCV);
+            return rightCV;
+        }
+    }
+
+    // Single threaded chaining value of the subtree of the given bytes, whose first chunk has the given chunk counter.
+    // The subtree must not be the root, and must be a complete subtree unless it is the rightmost one of the tree.
+    static void subtreeChainingValue(ByteBuffer input, int offset, int len, long chunkCounter, int[] key, int flags, int[] out){
+        subtreeChainingValue(input, offset, len, chunkCounter, key, flags, out, Blake3Backend.selected());
+    }
+
+    // Same as subtreeChainingValue(ByteBuffer, int, int, long, int[], int, int[]), hashing chunks with the given backend
+    private static void subtreeChainingValue(ByteBuffer input, int offset, int len, long chunkCounter, int[] key, int flags,
+                                             int[] out, Blake3Backend backend){
+        Blake3 hasher = new Blake3(key, flags);
+        hasher.backend = backend;
+        hasher.subtree = true;
+        hasher.chunkState.reset(key, chunkCounter);
+        hasher.update(input, offset, len);
+        hasher.rootNode().chainingValue(out);
+    }
+
+    // Chaining value of the (non root) parent of the two child CVs
+    static void parentChainingValue(int[] leftChildCV, int[] rightChildCV, int[] key, int flags, int[] out){
+        Node parent = new Node();
+        parent.setParent(leftChildCV, 0, rightChildCV, 0, key, flags);
+        parent.chainingValue(out);
+    }
+
+    // Extended output reader of the parent of the two child CVs as the root
+    static OutputReader parentRootOutputReader(int[] leftChildCV, int[] rightChildCV, int[] key, int flags){
+        Node parent = new Node();
+        parent.setParent(leftChildCV, 0, rightChildCV, 0, key, flags);
+        return new OutputReader(parent.inputChainingValue, parent.blockWords, parent.blockLen, parent.flags | ROOT,
+                Blake3Backend.selected());
+    }
+
+    // Root output of the parent of the two child CVs, i.e. the hash of a tree of more than one chunk
+    static void parentRootOutputBytes(int[] leftChildCV, int[] rightChildCV, int[] key, int flags, byte[] out, int offset, int len){
+        Node parent = new Node();
+        parent.setParent(leftChildCV, 0, rightChildCV, 0, key, flags);
+        parent.rootOutputBytes(out, offset, len);
+    }
+
     // Hasher
-    private ChunkState chunkState;
-    private int[] key;
-    private final int[][] cvStack = new int[54][];
+    private final ChunkState chunkState;
+    private final int[] key = new int[8];
+    private final int[] cvStack = new int[MAX_DEPTH * 8];
     private byte cvStackLen = 0;
-    private int flags;
+    private final int flags;
+
+    // Scratch space reused across calls so that update() doesn't allocate per chunk
+    private final Node node = new Node();
+    private final int[] cv = new int[8];
+    // Holds the encoding of a value that doesn't fit in the rest of the buffered block
+    private final byte[] valueBytes = new byte[8];
+    // Chunks are batched when the backend has a degree above 1, with an instance of it created on first use
+    private Blake3Backend backend = Blake3Backend.selected();
+    private Blake3Backend chunkBatchHasher;
+    private int[] chunkBatchCVs;
+    // Input and compressions since the last report to the listener, other than the blocks counted by the chunk state.
+    // Counted while hashing and reported by the update methods, so every byte is reported exactly once.
+    private long unreportedBytes;
+    private long unreportedCompressions;
+    private long unreportedParents;
+    // Set on the hashers of the subtrees of updateParallel, whose work is reported by the hasher they belong to
+    private boolean subtree;
 
     private Blake3(){
-        initialize(IV,0);
+        this(IV,0);
     }
 
     private Blake3(byte[] key){
-        initialize(wordsFromLEBytes(key), KEYED_HASH);
+        this(wordsFromLEBytes(key), KEYED_HASH);
     }
 
+    private Blake3(int[] key, int flags){
+        System.arraycopy(key, 0, this.key, 0, 8);
+        this.flags = flags;
+        this.chunkState = new ChunkState(key, 0, flags);
+    }
 
-    private Blake3(String context){
-        Blake3 contextHasher = new Blake3();
-        contextHasher.initialize(IV, DERIVE_KEY_CONTEXT);
-        contextHasher.update(context.getBytes(StandardCharsets.UTF_8));
-        int[] contextKey = wordsFromLEBytes(contextHasher.digest());
-        initialize(contextKey, DERIVE_KEY_MATERIAL);
+    /**
+     * Create an independent copy of this hasher, including all of the input added so far.
+     * This lets a common prefix be hashed once and then branched for several messages.
+     * @return A new hasher with the same state
+     */
+    public Blake3 copy(){
+        Blake3 copy = new Blake3(key, flags);
+        ChunkState from = this.chunkState;
+        ChunkState to = copy.chunkState;
+        System.arraycopy(from.chainingValue, 0, to.chainingValue, 0, 8);
+        System.arraycopy(from.block, 0, to.block, 0, from.blockLen);
+        to.chunkCounter = from.chunkCounter;
+        to.blockLen = from.blockLen;
+        to.blocksCompressed = from.blocksCompressed;
+        System.arraycopy(cvStack, 0, copy.cvStack, 0, cvStackLen * 8);
+        copy.cvStackLen = cvStackLen;
+        copy.backend = backend;
+        return copy;
     }
 
-    private void initialize(int[] key, int flags){
-        this.chunkState = new ChunkState(key, 0, flags);
-        this.key = key;
-        this.flags = flags;
+    /**
+     * Discard all of the input added so far, returning the hasher to the state it was constructed in.
+     * The key, or the key derived from the context string, is kept and nothing is reallocated, so hashers can be pooled.
+     */
+    public void reset(){
+        // Blocks given as words are only reported with the input that follows them
+        reportHashed();
+        chunkState.reset(key, 0);
+        cvStackLen = 0;
+    }
+
+    /**
+     * Serialize the state of this hasher, so that hashing can be resumed later, possibly in another process, with
+     * {@link #restoreState(byte[])}. The state holds the key, the partial chunk and at most one chaining value per
+     * level of the tree, so it is at most a few hundred bytes however much input has been added. It contains the last
+     * bytes of input, and the key of keyed hashers, so it must be protected like them.
+     * @return The versioned encoding of the state
+     */
+    public byte[] saveState(){
+        ChunkState state = this.chunkState;
+        ByteBuffer out = ByteBuffer.allocate(STATE_HEADER_LEN + state.blockLen + 1 + cvStackLen * OUT_LEN)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(STATE_MAGIC).put(STATE_VERSION).put((byte) flags);
+        for(int word : key) out.putInt(word);
+        out.putLong(state.chunkCounter);
+        for(int word : state.chainingValue) out.putInt(word);
+        out.put((byte) state.blocksCompressed).put((byte) state.blockLen).put(state.block, 0, state.blockLen);
+        out.put(cvStackLen);
+        for(int i = 0; i < cvStackLen * 8; i++) out.putInt(cvStack[i]);
+        return out.array();
+    }
+
+    /**
+     * Create a hasher from a state saved by {@link #saveState()}. Its digest is the same as that of a single hasher
+     * that was given all of the input.
+     * @param state Saved state
+     * @return A new hasher with the saved state
+     * @throws IllegalArgumentException If the state is malformed, from an unsupported version, or inconsistent
+     */
+    public static Blake3 restoreState(byte[] state){
+        ByteBuffer in = ByteBuffer.wrap(state);
+        Blake3 hasher = restoreState(in);
+        if(in.hasRemaining()){
+            throw new IllegalArgumentException("Hasher state has " + in.remaining() + " trailing bytes");
+        }
+        return hasher;
+    }
+
+    /**
+     * Create a hasher from a state saved by {@link #saveState()}, read from the position of the buffer,
+     * which is advanced past the state
+     * @param state Buffer holding the saved state
+     * @return A new hasher with the saved state
+     * @throws IllegalArgumentException If the state is malformed, from an unsupported version, or inconsistent
+     */
+    public static Blake3 restoreState(ByteBuffer state){
+        ByteBuffer in = state.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if(in.remaining() < STATE_HEADER_LEN || in.getInt() != STATE_MAGIC){
+            throw new IllegalArgumentException("Not a saved hasher state");
+        }
+        byte version = in.get();
+        if(version != STATE_VERSION){
+            throw new IllegalArgumentException("Unsupported hasher state version " + version);
+        }
+        int flags = in.get();
+        int[] key = new int[8];
+        for(int i = 0; i < 8; i++) key[i] = in.getInt();
+        if(flags != 0 && flags != KEYED_HASH && flags != DERIVE_KEY_MATERIAL || flags == 0 && !Arrays.equals(key, IV)){
+            throw new IllegalArgumentException("Invalid hasher mode in state");
+        }
+        long chunkCounter = in.getLong();
+        int[] chainingValue = new int[8];
+        for(int i = 0; i < 8; i++) chainingValue[i] = in.getInt();
+        int blocksCompressed = in.get();
+        int blockLen = in.get();
+        // The hasher only compresses a block, and only starts a chunk, once input follows it
+        if(chunkCounter < 0 || chunkCounter >= 1L << MAX_DEPTH || blocksCompressed < 0 || blocksCompressed >= CHUNK_LEN / BLOCK_LEN
+                || blockLen < 0 || blockLen > BLOCK_LEN || blockLen == 0 && (blocksCompressed > 0 || chunkCounter > 0)
+                || blocksCompressed == 0 && !Arrays.equals(chainingValue, key)){
+            throw new IllegalArgumentException("Invalid chunk state in hasher state");
+        }
+        if(in.remaining() < blockLen + 1){
+            throw new IllegalArgumentException("Truncated hasher state");
+        }
+        Blake3 hasher = new Blake3(key, flags);
+        ChunkState chunkState = hasher.chunkState;
+        chunkState.reset(chainingValue, chunkCounter);
+        chunkState.blocksCompressed = blocksCompressed;
+        chunkState.blockLen = blockLen;
+        in.get(chunkState.block, 0, blockLen);
+        // The stack holds one chaining value per complete subtree, i.e. per bit set in the number of finished chunks
+        int cvStackLen = in.get();
+        if(cvStackLen != Long.bitCount(chunkCounter)){
+            throw new IllegalArgumentException("Hasher state has " + cvStackLen + " chaining values for "
+                    + chunkCounter + " chunks");
+        }
+        if(in.remaining() < cvStackLen * OUT_LEN){
+            throw new IllegalArgumentException("Truncated hasher state");
+        }
+        for(int i = 0; i < cvStackLen * 8; i++) hasher.cvStack[i] = in.getInt();
+        hasher.cvStackLen = (byte) cvStackLen;
+        state.position(state.position() + in.position());
+        return hasher;
+    }
+
+    /**
+     * Hash the rest of the input of this hasher, and read its extended output, with the given backend instead of the one
+     * selected for the JVM. This doesn't change the hash, only how it is computed.
+     * @param backend One of {@link Blake3Backend#available()}, or another implementation
+     * @return This hasher
+     */
+    public Blake3 useBackend(Blake3Backend backend){
+        this.backend = Objects.requireNonNull(backend);
+        this.chunkBatchHasher = null;
+        this.chunkBatchCVs = null;
+        return this;
+    }
+
+    Blake3Backend backend(){
+        return backend;
+    }
+
+    // Uncached, see KeyDerivationContext
+    static int[] deriveContextKey(String context){
+        Blake3 contextHasher = new Blake3(IV, DERIVE_KEY_CONTEXT);
+        contextHasher.update(context.getBytes(StandardCharsets.UTF_8));
+        return wordsFromLEBytes(contextHasher.digest());
     }
 
     /**
@@ -272,17 +757,135 @@ public class Blake3 {
      * @throws IOException If the file does not exist
      */
     public void update(File file) throws IOException {
+        Blake3Listener listener = Blake3.listener;
         // Update the hasher 4kb at a time to avoid memory issues when hashing large files
         try(InputStream ios = new FileInputStream(file)){
             byte[] buffer = new byte[4096];
             int read = 0;
+            if(listener == null){
+                while((read = ios.read(buffer)) != -1){
+                    update(buffer, 0, read);
+                }
+                return;
+            }
+            long bytes = 0;
+            long readNanos = 0;
+            long hashNanos = 0;
+            long start = System.nanoTime();
             while((read = ios.read(buffer)) != -1){
-                if(read == buffer.length) {
-                    update(buffer);
-                } else {
-                    update(Arrays.copyOfRange(buffer, 0, read));
+                long readEnd = System.nanoTime();
+                update(buffer, 0, read);
+                long hashEnd = System.nanoTime();
+                bytes += read;
+                readNanos += readEnd - start;
+                hashNanos += hashEnd - readEnd;
+                start = hashEnd;
+            }
+            readNanos += System.nanoTime() - start;
+            listener.fileHashed(bytes, readNanos, hashNanos);
+        }
+    }
+
+    /**
+     * Append the byte contents of the file to the hash tree, hashing straight out of memory mapped windows of the file
+     * @param path File to be added
+     * @throws IOException If the file cannot be opened or read
+     */
+    public void update(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            update(channel);
+        }
+    }
+
+    /**
+     * Append the contents of the channel, from its current position to the end, to the hash tree.
+     * The file is memory mapped in large windows, falling back to reading it into a direct buffer if it cannot be mapped.
+     * The position of the channel is left at the end of the file.
+     * @param channel Channel to be added
+     * @throws IOException If the channel cannot be read
+     */
+    public void update(FileChannel channel) throws IOException {
+        update(channel, null, 0);
+    }
+
+    /**
+     * Append the byte contents of the file to the hash tree, hashing separate regions of the file on the common
+     * {@link ForkJoinPool}
+     * @param path File to be added
+     * @throws IOException If the file cannot be opened or read
+     */
+    public void updateParallel(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            updateParallel(channel, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_SPLIT_LEN);
+        }
+    }
+
+    /**
+     * Append the contents of the channel, from its current position to the end, to the hash tree,
+     * hashing separate regions of each mapped window on the given pool
+     * @param channel Channel to be added
+     * @param pool Pool the regions are hashed on
+     * @param minSplitLen Regions of at most this many bytes are hashed on a single thread
+     * @throws IOException If the channel cannot be read
+     * @see #updateParallel(byte[], ForkJoinPool, int)
+     */
+    public void updateParallel(FileChannel channel, ForkJoinPool pool, int minSplitLen) throws IOException {
+        update(channel, pool, minSplitLen);
+    }
+
+    // Hashes the mapped windows on the pool, or on the calling thread if it is null.
+    // Mapping a window only counts as reading time, its pages are faulted in while it is hashed.
+    private void update(FileChannel channel, ForkJoinPool pool, int minSplitLen) throws IOException {
+        Blake3Listener listener = Blake3.listener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long startPosition = channel.position();
+        long position = startPosition;
+        long size = channel.size();
+        long hashNanos = 0;
+        while(position < size){
+            int windowLen = (int) Math.min(MAP_WINDOW_LEN, size - position);
+            MappedByteBuffer window;
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowLen);
+            } catch (IOException | UnsupportedOperationException e){
+                break;
+            }
+            long hashStart = listener == null ? 0 : System.nanoTime();
+            if(pool == null){
+                update(window, 0, windowLen);
+            } else {
+                updateParallel(window, 0, windowLen, pool, minSplitLen);
+            }
+            if(listener != null) hashNanos += System.nanoTime() - hashStart;
+            position += windowLen;
+        }
+
+        // Read whatever couldn't be mapped, including anything appended to the file or special files that report no size
+        channel.position(position);
+        long bytes = position - startPosition;
+        ByteBuffer probe = PROBE_BUFFER.get();
+        probe.clear();
+        int read = channel.read(probe);
+        if(read != -1){
+            bytes += read;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_LEN);
+            probe.flip();
+            buffer.put(probe);
+            while((read = channel.read(buffer)) != -1){
+                bytes += Math.max(read, 0);
+                if(!buffer.hasRemaining()){
+                    long hashStart = listener == null ? 0 : System.nanoTime();
+                    update(buffer, 0, buffer.position());
+                    if(listener != null) hashNanos += System.nanoTime() - hashStart;
+                    buffer.clear();
                 }
             }
+            long hashStart = listener == null ? 0 : System.nanoTime();
+            update(buffer, 0, buffer.position());
+            if(listener != null) hashNanos += System.nanoTime() - hashStart;
+        }
+        if(listener != null){
+            listener.fileHashed(bytes, System.nanoTime() - start - hashNanos, hashNanos);
         }
     }
 
@@ -291,22 +894,361 @@ public class Blake3 {
      * @param input Data to be added
      */
     public void update(byte[] input){
-        int currPos = 0;
-        while(currPos < input.length) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Appends the bytes between the position and the limit of the buffer to the hash tree.
+     * Heap and direct buffers are both read in place, and the position of the buffer is advanced to its limit.
+     * @param input Data to be added
+     */
+    public void update(ByteBuffer input){
+        update(input, input.position(), input.remaining());
+        input.position(input.limit());
+    }
+
+    /**
+     * Appends new data to the hash tree, hashing large inputs on the common {@link ForkJoinPool}
+     * @param input Data to be added
+     */
+    public void updateParallel(byte[] input){
+        updateParallel(input, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_SPLIT_LEN);
+    }
+
+    /**
+     * Appends new data to the hash tree, splitting it into power of two sized subtrees that are hashed on the given pool.
+     * The resulting hash is identical to the one produced by {@link #update(byte[])}.
+     * @param input Data to be added
+     * @param pool Pool the subtrees are hashed on
+     * @param minSplitLen Subtrees of at most this many bytes are hashed on a single thread, inputs of at most this many bytes
+     *                    are hashed on the calling thread
+     */
+    public void updateParallel(byte[] input, ForkJoinPool pool, int minSplitLen){
+        updateParallel(ByteBuffer.wrap(input), 0, input.length, pool, minSplitLen);
+    }
+
+    // Also used by the memory segment layer (Java 22+) to hash buffer views of segments
+    void updateParallel(ByteBuffer input, int offset, int len, ForkJoinPool pool, int minSplitLen){
+        minSplitLen = Math.max(minSplitLen, CHUNK_LEN);
+        if(len <= minSplitLen){
+            update(input, offset, len);
+            return;
+        }
+
+        // Complete the partially filled chunk first, so that the subtrees start on a chunk boundary
+        if(chunkState.len() > 0 && chunkState.len() < CHUNK_LEN){
+            int take = Math.min(CHUNK_LEN - chunkState.len(), len);
+            update(input, offset, take);
+            offset += take;
+            len -= take;
+        }
+
+        // Hash the largest subtree that is aligned to the current chunk counter and isn't the end of the input.
+        // The last chunk must stay in the chunk state so that it can become the root if needed.
+        while(len > CHUNK_LEN){
+            if(chunkState.len() == CHUNK_LEN){
+                finishChunk();
+            }
+            long chunkCounter = chunkState.chunkCounter;
+            long subtreeChunks = Long.highestOneBit((len - 1) / CHUNK_LEN);
+            if(chunkCounter != 0){
+                subtreeChunks = Math.min(subtreeChunks, Long.lowestOneBit(chunkCounter));
+            }
+            int subtreeLen = (int) (subtreeChunks * CHUNK_LEN);
+            if(subtreeLen <= minSplitLen){
+                subtreeChainingValue(input, offset, subtreeLen, chunkCounter, key, flags, cv, backend);
+            } else {
+                int[] subtreeCV = pool.invoke(new SubtreeTask(input, offset, subtreeLen, chunkCounter, key, flags, minSplitLen,
+                        backend));
+                System.arraycopy(subtreeCV, 0, cv, 0, 8);
+            }
+            long totalChunks = chunkCounter + subtreeChunks;
+            addChunkChainingValue(cv, totalChunks / subtreeChunks);
+            chunkState.reset(key, totalChunks);
+            unreportedBytes += subtreeLen;
+            unreportedCompressions += subtreeChunks * (CHUNK_LEN / BLOCK_LEN);
+            unreportedParents += subtreeChunks - 1;
+            offset += subtreeLen;
+            len -= subtreeLen;
+        }
+        update(input, offset, len);
+    }
+
+    // Reads at absolute indices without moving the position, also used by the channel wrappers and the memory segment layer
+    void update(ByteBuffer input, int index, int len){
+        if(input.hasArray()){
+            update(input.array(), input.arrayOffset() + index, len);
+            return;
+        }
+        unreportedBytes += len;
+        while(len > 0) {
+            if (chunkState.len() == CHUNK_LEN) {
+                finishChunk();
+            }
+
+            if (chunkState.len() == 0 && len > chunkBatchLen()) {
+                chunkBatchHasher.hashChunks(input, index, key, chunkState.chunkCounter, flags, chunkBatchCVs);
+                addChunkBatchChainingValues();
+                index += chunkBatchHasher.degree() * CHUNK_LEN;
+                len -= chunkBatchHasher.degree() * CHUNK_LEN;
+                continue;
+            }
+
+            int take = Math.min(CHUNK_LEN - chunkState.len(), len);
+            chunkState.update(input, index, take);
+            index += take;
+            len -= take;
+        }
+        reportHashed();
+    }
+
+    /**
+     * Appends len bytes of input, starting at offset, to the hash tree
+     * @param input Data to be added
+     * @param offset Offset of the first byte to be added
+     * @param len Number of bytes to be added
+     * @throws IndexOutOfBoundsException If the range is not within the array
+     */
+    public void update(byte[] input, int offset, int len){
+        Objects.checkFromIndexSize(offset, len, input.length);
+        unreportedBytes += len;
+        while(len > 0) {
 
             // If this chunk has chained in 16 64 bytes of input, add its CV to the stack
             if (chunkState.len() == CHUNK_LEN) {
-                int[] chunkCV = chunkState.createNode().chainingValue();
-                long totalChunks = chunkState.chunkCounter + 1;
-                addChunkChainingValue(chunkCV, totalChunks);
-                chunkState = new ChunkState(key, totalChunks, flags);
+                finishChunk();
+            }
+
+            // Hash whole chunks in SIMD lanes when possible, the last chunk of the input always stays in the chunk state
+            if (chunkState.len() == 0 && len > chunkBatchLen()) {
+                chunkBatchHasher.hashChunks(input, offset, key, chunkState.chunkCounter, flags, chunkBatchCVs);
+                addChunkBatchChainingValues();
+                offset += chunkBatchHasher.degree() * CHUNK_LEN;
+                len -= chunkBatchHasher.degree() * CHUNK_LEN;
+                continue;
             }
 
             int want = CHUNK_LEN - chunkState.len();
-            int take = Math.min(want, input.length - currPos);
-            chunkState.update(Arrays.copyOfRange(input, currPos, currPos + take));
-            currPos+=take;
+            int take = Math.min(want, len);
+            chunkState.update(input, offset, take);
+            offset += take;
+            len -= take;
+        }
+        reportHashed();
+    }
+
+    /**
+     * Appends the 4 byte little endian encoding of the value to the hash tree, without allocating
+     * @param value Value to be added
+     */
+    public void updateInt(int value){
+        int offset = openBlock();
+        if(offset <= BLOCK_LEN - 4){
+            INT_LE.set(chunkState.block, offset, value);
+            chunkState.blockLen = offset + 4;
+            unreportedBytes += 4;
+            reportHashed();
+        } else {
+            INT_LE.set(valueBytes, 0, value);
+            update(valueBytes, 0, 4);
+        }
+    }
+
+    /**
+     * Appends the 8 byte little endian encoding of the value to the hash tree, without allocating
+     * @param value Value to be added
+     */
+    public void updateLong(long value){
+        int offset = openBlock();
+        if(offset <= BLOCK_LEN - 8){
+            LONG_LE.set(chunkState.block, offset, value);
+            chunkState.blockLen = offset + 8;
+            unreportedBytes += 8;
+            reportHashed();
+        } else {
+            LONG_LE.set(valueBytes, 0, value);
+            update(valueBytes, 0, 8);
+        }
+    }
+
+    /**
+     * Appends the 8 byte little endian encoding of the bits of the value, as given by {@link Double#doubleToLongBits},
+     * to the hash tree. All NaNs are added as the same canonical NaN.
+     * @param value Value to be added
+     */
+    public void updateDouble(double value){
+        updateLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Appends the UTF-8 encoding of the characters to the hash tree, encoding them straight into the block buffer of the
+     * hasher without allocating. Unpaired surrogates are encoded as '?', so the result is the same as adding
+     * {@code input.toString().getBytes(StandardCharsets.UTF_8)}. ASCII and Latin-1 text takes a fast path.
+     * @param input Characters to be added
+     */
+    public void updateUtf8(CharSequence input){
+        int i = 0;
+        int len = input.length();
+        while(i < len){
+            int offset = openBlock();
+            int start = offset;
+            byte[] block = chunkState.block;
+            // Fill the block with ASCII and Latin-1 characters, one or two bytes each
+            while(i < len && offset < BLOCK_LEN){
+                char c = input.charAt(i);
+                if(c < 0x80){
+                    block[offset++] = (byte) c;
+                } else if(c < 0x100 && offset < BLOCK_LEN - 1){
+                    block[offset++] = (byte) (0xc0 | c >>> 6);
+                    block[offset++] = (byte) (0x80 | c & 0x3f);
+                } else {
+                    break;
+                }
+                i++;
+            }
+            chunkState.blockLen = offset;
+            unreportedBytes += offset - start;
+            // Everything else, and characters that don't fit in the rest of the block, goes through update
+            if(i < len && offset < BLOCK_LEN){
+                int codePoint = input.charAt(i++);
+                if(Character.isHighSurrogate((char) codePoint) && i < len && Character.isLowSurrogate(input.charAt(i))){
+                    codePoint = Character.toCodePoint((char) codePoint, input.charAt(i++));
+                } else if(Character.isSurrogate((char) codePoint)){
+                    codePoint = '?';
+                }
+                update(valueBytes, 0, encodeUtf8(codePoint, valueBytes));
+            }
+        }
+        reportHashed();
+    }
+
+    /**
+     * Appends the length of the input as an 8 byte little endian integer, followed by the input, to the hash tree.
+     * Prefixing variable length fields with their length keeps the encoding of a sequence of fields unambiguous.
+     * @param input Data to be added
+     * @param offset Offset of the first byte to add
+     * @param len Number of bytes to add
+     * @throws IndexOutOfBoundsException If the range is not within the array
+     */
+    public void updateLengthPrefixed(byte[] input, int offset, int len){
+        Objects.checkFromIndexSize(offset, len, input.length);
+        updateLong(len);
+        update(input, offset, len);
+    }
+
+    /**
+     * Appends the length of the UTF-8 encoding of the characters as an 8 byte little endian integer, followed by the
+     * encoding as added by {@link #updateUtf8(CharSequence)}, to the hash tree
+     * @param input Characters to be added
+     */
+    public void updateLengthPrefixedUtf8(CharSequence input){
+        updateLong(utf8Length(input));
+        updateUtf8(input);
+    }
+
+    // Make room for more input in the buffered block, returning the number of bytes already in it
+    private int openBlock(){
+        if(chunkState.len() == CHUNK_LEN){
+            finishChunk();
+        } else if(chunkState.blockLen == BLOCK_LEN){
+            chunkState.compressBufferedBlock();
+        }
+        return chunkState.blockLen;
+    }
+
+    // Writes the UTF-8 encoding of the code point to out, returning its length
+    private static int encodeUtf8(int codePoint, byte[] out){
+        if(codePoint < 0x80){
+            out[0] = (byte) codePoint;
+            return 1;
+        } else if(codePoint < 0x800){
+            out[0] = (byte) (0xc0 | codePoint >>> 6);
+            out[1] = (byte) (0x80 | codePoint & 0x3f);
+            return 2;
+        } else if(codePoint < 0x10000){
+            out[0] = (byte) (0xe0 | codePoint >>> 12);
+            out[1] = (byte) (0x80 | codePoint >>> 6 & 0x3f);
+            out[2] = (byte) (0x80 | codePoint & 0x3f);
+            return 3;
+        }
+        out[0] = (byte) (0xf0 | codePoint >>> 18);
+        out[1] = (byte) (0x80 | codePoint >>> 12 & 0x3f);
+        out[2] = (byte) (0x80 | codePoint >>> 6 & 0x3f);
+        out[3] = (byte) (0x80 | codePoint & 0x3f);
+        return 4;
+    }
+
+    // The length of the encoding written by updateUtf8
+    private static long utf8Length(CharSequence input){
+        long utf8Len = 0;
+        int len = input.length();
+        for(int i = 0; i < len; i++){
+            char c = input.charAt(i);
+            if(c < 0x80){
+                utf8Len += 1;
+            } else if(c < 0x800){
+                utf8Len += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(input.charAt(i + 1))){
+                utf8Len += 4;
+                i++;
+            } else if(Character.isSurrogate(c)){
+                utf8Len += 1;
+            } else {
+                utf8Len += 3;
+            }
         }
+        return utf8Len;
+    }
+
+    // The number of bytes buffered in a partial block, 0 if the next input starts a new block.
+    // Together with updateBlockWords, lets input sources the update methods can't read directly, such as the memory
+    // segments of the Java 22 layer, hand whole blocks to the compression core as words.
+    int partialBlockLen(){
+        return chunkState.blockLen % BLOCK_LEN;
+    }
+
+    // Chain a whole 64 byte block given as 16 words, which must not be the last bytes of the input.
+    // Only valid when partialBlockLen() is 0. The block is reported to the listener with the input that follows it.
+    void updateBlockWords(int[] words){
+        if (chunkState.len() == CHUNK_LEN) {
+            finishChunk();
+        }
+        chunkState.updateBlockWords(words);
+        unreportedBytes += BLOCK_LEN;
+    }
+
+    // The number of bytes hashed by each chunk batch, or MAX_VALUE if chunks can't be batched
+    private int chunkBatchLen(){
+        if(backend.degree() <= 1){
+            return Integer.MAX_VALUE;
+        }
+        if(chunkBatchHasher == null){
+            chunkBatchHasher = backend.newInstance();
+            chunkBatchCVs = new int[chunkBatchHasher.degree() * 8];
+        }
+        return chunkBatchHasher.degree() * CHUNK_LEN;
+    }
+
+    // Push the CVs of a batch of chunks starting at the current chunk counter onto the stack
+    private void addChunkBatchChainingValues(){
+        long chunkCounter = chunkState.chunkCounter;
+        int degree = chunkBatchHasher.degree();
+        for(int i = 0; i < degree; i++){
+            System.arraycopy(chunkBatchCVs, i * 8, cv, 0, 8);
+            addChunkChainingValue(cv, chunkCounter + i + 1);
+        }
+        chunkState.reset(key, chunkCounter + degree);
+        unreportedCompressions += (long) degree * (CHUNK_LEN / BLOCK_LEN);
+    }
+
+    // Push the CV of the full current chunk onto the stack and start the next chunk
+    private void finishChunk(){
+        chunkState.output(node);
+        node.chainingValue(cv);
+        unreportedCompressions += 1;
+        long totalChunks = chunkState.chunkCounter + 1;
+        addChunkChainingValue(cv, totalChunks);
+        chunkState.reset(key, totalChunks);
     }
 
     /**
@@ -315,18 +1257,48 @@ public class Blake3 {
      * @return The byte array representing the hash
      */
     public byte[] digest(int hashLen){
-        Node node = this.chunkState.createNode();
+        byte[] hash = new byte[hashLen];
+        rootNode().rootOutputBytes(hash, 0, hashLen);
+        notifyFinalized(hashLen);
+        return hash;
+    }
+
+    // Report the input and compressions counted since the last report to the listener, and reset the counts
+    private void reportHashed(){
+        Blake3Listener listener = Blake3.listener;
+        if(listener != null && !subtree && (unreportedBytes > 0 || unreportedParents > 0)){
+            listener.hashed(unreportedBytes, unreportedCompressions + chunkState.unreportedCompressions, unreportedParents);
+        }
+        unreportedBytes = 0;
+        unreportedCompressions = 0;
+        unreportedParents = 0;
+        chunkState.unreportedCompressions = 0;
+    }
+
+    // Report the compressions of finalizing the hash to the listener. rootNode() compresses the buffered last block and
+    // all but the root of the parents on the stack, which is compressed once per output block instead.
+    private void notifyFinalized(long hashLen){
+        Blake3Listener listener = Blake3.listener;
+        if(listener != null){
+            listener.finalized(cvStackLen > 0 ? 1 : 0, Math.max(0, cvStackLen - 1), (hashLen + BLOCK_LEN - 1) / BLOCK_LEN);
+        }
+    }
+
+    // The listener, or null if instrumentation is disabled
+    static Blake3Listener listener(){
+        return listener;
+    }
+
+    // Fold the current chunk and the CV stack into the root node, without modifying the hasher state
+    private Node rootNode(){
+        chunkState.output(node);
         int parentNodesRemaining = cvStackLen;
         while(parentNodesRemaining > 0){
             parentNodesRemaining -=1;
-            node = parentNode(
-                    cvStack[parentNodesRemaining],
-                    node.chainingValue(),
-                    key,
-                    flags
-            );
+            node.chainingValue(cv);
+            node.setParent(cvStack, parentNodesRemaining * 8, cv, 0, key, flags);
         }
-        return node.rootOutputBytes(hashLen);
+        return node;
     }
 
     /**
@@ -337,6 +1309,42 @@ public class Blake3 {
         return digest(DEFAULT_HASH_LEN);
     }
 
+    /**
+     * Write the blake3 hash for the current tree with the given byte length into the array
+     * @param out Array the hash is written to
+     * @param offset Offset of the first byte of the hash
+     * @param hashLen The number of bytes of hash to write
+     * @throws IndexOutOfBoundsException If the range is not within the array
+     */
+    public void digest(byte[] out, int offset, int hashLen){
+        Objects.checkFromIndexSize(offset, hashLen, out.length);
+        rootNode().rootOutputBytes(out, offset, hashLen);
+        notifyFinalized(hashLen);
+    }
+
+    /**
+     * Fill the bytes between the position and the limit of the buffer with the blake3 hash for the current tree,
+     * advancing the position of the buffer to its limit
+     * @param out Heap or direct buffer the hash is written to
+     */
+    public void digest(ByteBuffer out){
+        int hashLen = out.remaining();
+        rootNode().rootOutputBytes(out, out.position(), hashLen);
+        out.position(out.limit());
+        notifyFinalized(hashLen);
+    }
+
+    /**
+     * Finalize the current tree into a reader of its extended output, which can produce any amount of output
+     * incrementally and seek to any position. Later updates to this hasher do not affect the reader.
+     * @return A reader positioned at the start of the output
+     */
+    public OutputReader finalizeXof(){
+        Node root = rootNode();
+        notifyFinalized(0);
+        return new OutputReader(root.inputChainingValue, root.blockWords, root.blockLen, root.flags | ROOT, backend);
+    }
+
     /**
      * Generate the blake3 hash for the current tree with the given byte length
      * @param hashLen The number of bytes of hash to return
@@ -355,37 +1363,23 @@ public class Blake3 {
     }
 
     private void pushStack(int[] cv){
-        this.cvStack[this.cvStackLen] = cv;
+        System.arraycopy(cv, 0, cvStack, cvStackLen * 8, 8);
         cvStackLen+=1;
     }
 
-    private int[] popStack(){
+    // Returns the offset of the popped CV in cvStack
+    private int popStack(){
         this.cvStackLen-=1;
-        return cvStack[cvStackLen];
-    }
-
-    // Combines the chaining values of two children to create the parent node
-    private static Node parentNode(int[] leftChildCV, int[] rightChildCV, int[] key, int flags){
-        int[] blockWords = new int[16];
-        int i = 0;
-        for(int x: leftChildCV){
-            blockWords[i] = x;
-            i+=1;
-        }
-        for(int x: rightChildCV){
-            blockWords[i] = x;
-            i+=1;
-        }
-        return new Node(key, blockWords, 0, BLOCK_LEN, PARENT | flags);
-    }
-
-    private static int[] parentCV(int[] leftChildCV, int[] rightChildCV, int[] key, int flags){
-        return parentNode(leftChildCV, rightChildCV, key, flags).chainingValue();
+        return cvStackLen * 8;
     }
 
+    // Replaces newCV with the CV of its parent, whose left child is the top of the stack
+    // For a subtree of 2^k chunks, totalChunks is counted in units of 2^k chunks
     private void addChunkChainingValue(int[] newCV, long totalChunks){
         while((totalChunks & 1) == 0){
-            newCV = parentCV(popStack(), newCV, key, flags);
+            node.setParent(cvStack, popStack(), newCV, 0, key, flags);
+            node.chainingValue(newCV);
+            unreportedParents += 1;
             totalChunks >>=1;
         }
         pushStack(newCV);
@@ -401,6 +1395,15 @@ public class Blake3 {
         return new String(hexChars);
     }
 
+    /**
+     * Install a listener that is notified of the work done by all hashers, see {@link Blake3Listener}.
+     * Instrumentation is disabled by default and costs nothing while it is.
+     * @param listener The listener, or null to disable instrumentation
+     */
+    public static void setListener(Blake3Listener listener){
+        Blake3.listener = listener;
+    }
+
     /**
      * Construct a BLAKE3 blake3 hasher
      */
@@ -422,10 +1425,275 @@ public class Blake3 {
      * Construct a new BLAKE3 key derivation mode hasher
      * The context string should be hardcoded, globally unique, and application-specific. <br><br>
      * A good default format is <i>"[application] [commit timestamp] [purpose]"</i>, <br>
-     * eg "example.com 2019-12-25 16:18:03 session tokens v1"
+     * eg "example.com 2019-12-25 16:18:03 session tokens v1" <br><br>
+     * The context keys of the 64 most recently used context strings are cached.
      * @param context Context string used to derive keys.
      */
     public static Blake3 newKeyDerivationHasher(String context){
-        return new Blake3(context);
+        return newKeyDerivationHasher(KeyDerivationContext.of(context));
+    }
+
+    /**
+     * Construct a new BLAKE3 key derivation mode hasher for a context whose key has already been derived
+     * @param context The context
+     */
+    public static Blake3 newKeyDerivationHasher(KeyDerivationContext context){
+        return new Blake3(context.contextKey(), DERIVE_KEY_MATERIAL);
+    }
+
+    /**
+     * Hash many independent messages at once, writing the 32 byte hash of inputs[i] to outputs at offset 32 * i.
+     * Messages of at most one chunk (1024 bytes) are hashed side by side in SIMD lanes when the vector hasher is available,
+     * which is much faster than hashing small messages one at a time.
+     * @param inputs The messages to hash
+     * @param outputs Receives the hashes, must hold at least 32 * inputs.length bytes
+     * @throws IllegalArgumentException If outputs is too small
+     */
+    public static void hashMany(byte[][] inputs, byte[] outputs){
+        hashMany(inputs, outputs, IV, 0);
+    }
+
+    /**
+     * Keyed mode version of {@link #hashMany(byte[][], byte[])}
+     * @param key The 32 byte key
+     * @throws IllegalStateException If the key is not 32 bytes
+     * @throws IllegalArgumentException If outputs is too small
+     */
+    public static void keyedHashMany(byte[] key, byte[][] inputs, byte[] outputs){
+        if(!(key.length == KEY_LEN)) throw new IllegalStateException("Invalid key length");
+        hashMany(inputs, outputs, wordsFromLEBytes(key), KEYED_HASH);
+    }
+
+    /**
+     * Key derivation mode version of {@link #hashMany(byte[][], byte[])}, deriving a 32 byte key from each input
+     * @param context Context string used to derive keys.
+     * @throws IllegalArgumentException If outputs is too small
+     */
+    public static void deriveKeyMany(String context, byte[][] inputs, byte[] outputs){
+        hashMany(inputs, outputs, KeyDerivationContext.of(context).contextKey(), DERIVE_KEY_MATERIAL);
+    }
+
+    /**
+     * Write the 32 byte hash of input[offset..offset + len] to out, without creating a hasher.
+     * Messages of at most one chunk (1024 bytes) are hashed on a path that doesn't allocate, longer ones by a hasher.
+     * @param input Array containing the message
+     * @param offset Offset of the message in the array
+     * @param len Length of the message
+     * @param out Array the hash is written to
+     * @param outOffset Offset of the first byte of the hash
+     * @throws IndexOutOfBoundsException If the message or the hash is not within its array
+     */
+    public static void hash(byte[] input, int offset, int len, byte[] out, int outOffset){
+        oneShot(IV, 0, input, offset, len, out, outOffset);
+    }
+
+    /**
+     * Keyed mode version of {@link #hash(byte[], int, int, byte[], int)}
+     * @param key The 32 byte key
+     * @throws IllegalStateException If the key is not 32 bytes
+     * @throws IndexOutOfBoundsException If the message or the hash is not within its array
+     */
+    public static void keyedHash(byte[] key, byte[] input, int offset, int len, byte[] out, int outOffset){
+        if(!(key.length == KEY_LEN)) throw new IllegalStateException("Invalid key length");
+        checkOneShot(input, offset, len, out, outOffset);
+        if(len <= CHUNK_LEN){
+            // The key words are read in place to keep this path free of allocations
+            hashSingleChunkRoot((int) INT_LE.get(key, 0), (int) INT_LE.get(key, 4), (int) INT_LE.get(key, 8),
+                    (int) INT_LE.get(key, 12), (int) INT_LE.get(key, 16), (int) INT_LE.get(key, 20),
+                    (int) INT_LE.get(key, 24), (int) INT_LE.get(key, 28), KEYED_HASH, input, offset, len, out, outOffset);
+            notifySingleChunk(len);
+        } else {
+            Blake3 hasher = new Blake3(key);
+            hasher.update(input, offset, len);
+            hasher.digest(out, outOffset, OUT_LEN);
+        }
+    }
+
+    /**
+     * Key derivation mode version of {@link #hash(byte[], int, int, byte[], int)}, deriving a 32 byte key from the input
+     * @param context Context string used to derive keys.
+     * @throws IndexOutOfBoundsException If the input or the key is not within its array
+     */
+    public static void deriveKey(String context, byte[] input, int offset, int len, byte[] out, int outOffset){
+        deriveKey(KeyDerivationContext.of(context), input, offset, len, out, outOffset);
+    }
+
+    /**
+     * Key derivation mode version of {@link #hash(byte[], int, int, byte[], int)} for a context whose key has already
+     * been derived
+     * @param context The context
+     * @throws IndexOutOfBoundsException If the input or the key is not within its array
+     */
+    public static void deriveKey(KeyDerivationContext context, byte[] input, int offset, int len, byte[] out,
+                                 int outOffset){
+        oneShot(context.contextKey(), DERIVE_KEY_MATERIAL, input, offset, len, out, outOffset);
+    }
+
+    private static void oneShot(int[] key, int flags, byte[] input, int offset, int len, byte[] out, int outOffset){
+        checkOneShot(input, offset, len, out, outOffset);
+        if(len <= CHUNK_LEN){
+            hashSingleChunkRoot(input, offset, len, key, flags, out, outOffset);
+            notifySingleChunk(len);
+        } else {
+            Blake3 hasher = new Blake3(key, flags);
+            hasher.update(input, offset, len);
+            hasher.digest(out, outOffset, OUT_LEN);
+        }
+    }
+
+    private static void checkOneShot(byte[] input, int offset, int len, byte[] out, int outOffset){
+        Objects.checkFromIndexSize(offset, len, input.length);
+        Objects.checkFromIndexSize(outOffset, OUT_LEN, out.length);
+    }
+
+    // Report a message hashed as a single root chunk, longer messages are reported by their hasher
+    private static void notifySingleChunk(int len){
+        Blake3Listener listener = Blake3.listener;
+        if(listener != null){
+            // The last block is compressed as the root, i.e. as the output block
+            listener.hashed(len, singleChunkBlocks(len) - 1, 0);
+            listener.finalized(0, 0, 1);
+        }
+    }
+
+    private static void hashMany(byte[][] inputs, byte[] outputs, int[] key, int flags){
+        if(outputs.length / OUT_LEN < inputs.length){
+            throw new IllegalArgumentException("Outputs must hold " + inputs.length + " hashes");
+        }
+        int[] scalarIndices = new int[inputs.length];
+        int scalarCount = 0;
+        Blake3Backend backend = Blake3Backend.selected();
+        BatchBackend batchHasher = BatchBackend.of(backend);
+        if(batchHasher != null && inputs.length >= batchHasher.degree()){
+            // Sort the single chunk inputs by block count so that every batch of lanes compresses the same blocks
+            int[] blockCounts = new int[CHUNK_LEN / BLOCK_LEN + 2];
+            for(byte[] input : inputs){
+                if(input.length <= CHUNK_LEN) blockCounts[singleChunkBlocks(input.length) + 1]++;
+            }
+            for(int blocks = 1; blocks < blockCounts.length; blocks++) blockCounts[blocks] += blockCounts[blocks - 1];
+            int[] sorted = new int[blockCounts[blockCounts.length - 1]];
+            int[] next = blockCounts.clone();
+            for(int i = 0; i < inputs.length; i++){
+                if(inputs[i].length <= CHUNK_LEN) sorted[next[singleChunkBlocks(inputs[i].length)]++] = i;
+                else scalarIndices[scalarCount++] = i;
+            }
+            int degree = batchHasher.degree();
+            for(int blocks = 1; blocks < blockCounts.length - 1; blocks++){
+                int first = blockCounts[blocks];
+                int end = blockCounts[blocks + 1];
+                for(; end - first >= degree; first += degree){
+                    batchHasher.hashSingleChunkRoots(inputs, sorted, first, key, flags, outputs);
+                }
+                while(first < end) scalarIndices[scalarCount++] = sorted[first++];
+            }
+        } else {
+            for(int i = 0; i < inputs.length; i++) scalarIndices[scalarCount++] = i;
+        }
+        Blake3Listener listener = Blake3.listener;
+        if(listener != null){
+            // Longer inputs are reported by their hasher below
+            for(byte[] input : inputs){
+                if(input.length <= CHUNK_LEN) notifySingleChunk(input.length);
+            }
+        }
+        Blake3 hasher = null;
+        for(int i = 0; i < scalarCount; i++){
+            int index = scalarIndices[i];
+            byte[] input = inputs[index];
+            if(input.length <= CHUNK_LEN){
+                hashSingleChunkRoot(input, 0, input.length, key, flags, outputs, index * OUT_LEN);
+            } else {
+                if(hasher == null) hasher = new Blake3(key, flags);
+                else hasher.reset();
+                hasher.update(input);
+                hasher.digest(outputs, index * OUT_LEN, OUT_LEN);
+            }
+        }
+    }
+
+    // The number of blocks of a message of at most one chunk, an empty message still compresses one block
+    static int singleChunkBlocks(int len){
+        return Math.max(1, (len + BLOCK_LEN - 1) / BLOCK_LEN);
+    }
+
+    // Hash the message input[offset..offset + len] of at most one chunk directly as the root chunk, without the chunk
+    // state and stack of a hasher, and write its 32 byte hash to out[outOffset..]
+    static void hashSingleChunkRoot(byte[] input, int offset, int len, int[] key, int flags, byte[] out, int outOffset){
+        hashSingleChunkRoot(key[0], key[1], key[2], key[3], key[4], key[5], key[6], key[7], flags,
+                input, offset, len, out, outOffset);
+    }
+
+    // The one-shot path for short messages, which doesn't allocate: the chaining value is kept in the 32 bytes of out
+    // between blocks and the last block is compressed as the root, so its chaining value is the hash
+    private static void hashSingleChunkRoot(int k0, int k1, int k2, int k3, int k4, int k5, int k6, int k7, int flags,
+                                            byte[] input, int offset, int len, byte[] out, int outOffset){
+        if(input == out && outOffset < offset + len && offset < outOffset + OUT_LEN){
+            // The chaining value would overwrite message bytes that are yet to be compressed
+            byte[] hash = new byte[OUT_LEN];
+            hashSingleChunkRoot(k0, k1, k2, k3, k4, k5, k6, k7, flags, input, offset, len, hash, 0);
+            System.arraycopy(hash, 0, out, outOffset, OUT_LEN);
+            return;
+        }
+        INT_LE.set(out, outOffset, k0);
+        INT_LE.set(out, outOffset + 4, k1);
+        INT_LE.set(out, outOffset + 8, k2);
+        INT_LE.set(out, outOffset + 12, k3);
+        INT_LE.set(out, outOffset + 16, k4);
+        INT_LE.set(out, outOffset + 20, k5);
+        INT_LE.set(out, outOffset + 24, k6);
+        INT_LE.set(out, outOffset + 28, k7);
+        int end = offset + len;
+        int blocks = singleChunkBlocks(len);
+        for(int block = 0; block < blocks; block++){
+            int blockOffset = offset + block * BLOCK_LEN;
+            boolean last = block == blocks - 1;
+            int blockLen = last ? end - blockOffset : BLOCK_LEN;
+            int blockFlags = flags | (block == 0 ? CHUNK_START : 0) | (last ? CHUNK_END | ROOT : 0);
+            if(blockLen == BLOCK_LEN){
+                compressInPlace(out, outOffset, (int) INT_LE.get(input, blockOffset),
+                        (int) INT_LE.get(input, blockOffset + 4), (int) INT_LE.get(input, blockOffset + 8),
+                        (int) INT_LE.get(input, blockOffset + 12), (int) INT_LE.get(input, blockOffset + 16),
+                        (int) INT_LE.get(input, blockOffset + 20), (int) INT_LE.get(input, blockOffset + 24),
+                        (int) INT_LE.get(input, blockOffset + 28), (int) INT_LE.get(input, blockOffset + 32),
+                        (int) INT_LE.get(input, blockOffset + 36), (int) INT_LE.get(input, blockOffset + 40),
+                        (int) INT_LE.get(input, blockOffset + 44), (int) INT_LE.get(input, blockOffset + 48),
+                        (int) INT_LE.get(input, blockOffset + 52), (int) INT_LE.get(input, blockOffset + 56),
+                        (int) INT_LE.get(input, blockOffset + 60), blockLen, blockFlags);
+            } else {
+                // Only a partial last block is read word by word, with zero padding
+                compressInPlace(out, outOffset, blockWord(input, blockOffset, end, 0),
+                        blockWord(input, blockOffset, end, 1), blockWord(input, blockOffset, end, 2),
+                        blockWord(input, blockOffset, end, 3), blockWord(input, blockOffset, end, 4),
+                        blockWord(input, blockOffset, end, 5), blockWord(input, blockOffset, end, 6),
+                        blockWord(input, blockOffset, end, 7), blockWord(input, blockOffset, end, 8),
+                        blockWord(input, blockOffset, end, 9), blockWord(input, blockOffset, end, 10),
+                        blockWord(input, blockOffset, end, 11), blockWord(input, blockOffset, end, 12),
+                        blockWord(input, blockOffset, end, 13), blockWord(input, blockOffset, end, 14),
+                        blockWord(input, blockOffset, end, 15), blockLen, blockFlags);
+            }
+        }
+    }
+
+    // Compresses a block at counter 0 with the chaining value in the 32 bytes at cv[cvOffset..], and writes the new one
+    // back there
+    private static void compressInPlace(byte[] cv, int cvOffset, int m0, int m1, int m2, int m3, int m4, int m5,
+                                        int m6, int m7, int m8, int m9, int m10, int m11, int m12, int m13, int m14,
+                                        int m15, int blockLen, int flags){
+        compress((int) INT_LE.get(cv, cvOffset), (int) INT_LE.get(cv, cvOffset + 4), (int) INT_LE.get(cv, cvOffset + 8),
+                (int) INT_LE.get(cv, cvOffset + 12), (int) INT_LE.get(cv, cvOffset + 16),
+                (int) INT_LE.get(cv, cvOffset + 20), (int) INT_LE.get(cv, cvOffset + 24),
+                (int) INT_LE.get(cv, cvOffset + 28), m0, m1, m2, m3, m4, m5, m6, m7, m8, m9, m10, m11, m12, m13, m14,
+                m15, 0, blockLen, flags, null, cv, cvOffset, false);
+    }
+
+    // The word at index word of the block at input[blockOffset..], zero padded past end
+    private static int blockWord(byte[] input, int blockOffset, int end, int word){
+        int i = blockOffset + 4 * word;
+        if(i + 4 <= end) return (int) INT_LE.get(input, i);
+        int value = 0;
+        for(int j = i; j < end; j++){
+            value |= (input[j] & 0xFF) << (8 * (j - i));
+        }
+        return value;
     }
 }
@@ -0,0 +1,68 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compression backend: the BLAKE3 compression function, and the hashing of batches of whole, consecutive chunks at
+ * once for implementations that compress several of them in parallel lanes.
+ * <br><br>
+ * The built in backends are "native" (the upstream C implementation through JNI, when its library can be loaded),
+ * "vector" (the Vector API on Java 17+, when jdk.incubator.vector is resolved) and "java" (the portable scalar code).
+ * Other implementations can be registered as {@link java.util.ServiceLoader} services. The fastest available backend is
+ * selected automatically, the blake3.backend system property overrides the choice by name.
+ * All backends produce identical hashes, single blocks and parent nodes are always compressed by the scalar code.
+ * <br><br>
+ * Words are the little endian 32 bit words of the BLAKE3 specification and flags are its domain flags.
+ * Instances hold scratch space and are not thread safe, each hasher uses its own.
+ */
+public interface Blake3Backend {
+
+    /**
+     * @return The name of this backend, as used by the blake3.backend system property
+     */
+    String name();
+
+    /**
+     * @return The number of chunks hashed by each call to hashChunks, 1 if this backend doesn't batch chunks
+     */
+    int degree();
+
+    /**
+     * Compress a block into the 16 words of extended output, the first 8 of which are the new chaining value
+     * @param chainingValue The 8 word input chaining value
+     * @param blockWords The 16 words of the block
+     * @param out Receives the 16 output words
+     */
+    void compress(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags, int[] out);
+
+    /**
+     * Hash degree() chunks of input starting at offset, the first of which has the given chunk counter
+     * @param cvs Receives the 8 word chaining value of each chunk, one after the other
+     */
+    void hashChunks(byte[] input, int offset, int[] key, long chunkCounter, int flags, int[] cvs);
+
+    /**
+     * Same as {@link #hashChunks(byte[], int, int[], long, int, int[])}, reading at absolute indices of a heap or direct buffer
+     */
+    void hashChunks(ByteBuffer input, int index, int[] key, long chunkCounter, int flags, int[] cvs);
+
+    /**
+     * @return A new backend of the same kind, with its own scratch space
+     */
+    Blake3Backend newInstance();
+
+    /**
+     * @return The backends that can be used in this JVM, fastest first
+     */
+    static List<Blake3Backend> available(){
+        return Backends.AVAILABLE;
+    }
+
+    /**
+     * @return The backend used by hashers unless told otherwise with {@link Blake3#useBackend(Blake3Backend)}
+     */
+    static Blake3Backend selected(){
+        return Backends.SELECTED;
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Hashes every regular file of a directory tree concurrently.
+ * Files are hashed on virtual threads when the JVM has them (Java 21+), and on a pool of one platform thread per
+ * processor otherwise. Small files are read into heap buffers and larger ones are hashed from memory mapped windows.
+ * The buffers and mapped windows of the files being hashed share a budget of in-flight bytes, so the memory used
+ * stays bounded however many files the tree has. Symbolic links are not followed.
+ */
+public final class Blake3Files {
+    /**
+     * The default budget of bytes buffered by the files being hashed at once, 64 MiB
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT_BYTES = 64 * 1024 * 1024;
+
+    private static final int MIN_READ_LEN = 4096;
+    // Files of at least this many bytes are hashed from memory mapped windows
+    private static final long MIN_MAP_LEN = 64 * 1024;
+    private static final String TREE_DIGEST_CONTEXT = "io.github.rctcwyvrn.blake3 Blake3Files tree digest v1";
+    private static final byte[] FILE_ENTRY = {0};
+    private static final byte[] DIRECTORY_ENTRY = {1};
+
+    private Blake3Files(){
+    }
+
+    /**
+     * Hash every regular file under root, with the default in-flight bytes budget
+     * @param root Directory (or single file) to hash
+     * @param consumer Receives each file and its 32 byte hash, see {@link #hashTree(Path, int, BiConsumer)}
+     * @throws IOException If the tree can't be walked or a file can't be read
+     */
+    public static void hashTree(Path root, BiConsumer<Path, byte[]> consumer) throws IOException {
+        hashTree(root, DEFAULT_MAX_IN_FLIGHT_BYTES, consumer);
+    }
+
+    /**
+     * Hash every regular file under root.
+     * The consumer is called as files complete, in no particular order, from the hashing threads but never concurrently.
+     * @param root Directory (or single file) to hash
+     * @param maxInFlightBytes Budget of bytes buffered by the files being hashed at once
+     * @param consumer Receives each file, as root resolved against its relative path, and its 32 byte hash
+     * @throws IOException If the tree can't be walked or a file can't be read. Files that are already being hashed
+     * are completed first, but no new ones are started.
+     * @throws IllegalArgumentException If the budget is not positive
+     */
+    public static void hashTree(Path root, int maxInFlightBytes, BiConsumer<Path, byte[]> consumer) throws IOException {
+        if(maxInFlightBytes <= 0) throw new IllegalArgumentException("Invalid in-flight bytes budget " + maxInFlightBytes);
+        Semaphore budget = new Semaphore(maxInFlightBytes);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        Object consumerLock = new Object();
+        ExecutorService executor = newExecutor();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if(failure.get() != null) return FileVisitResult.TERMINATE;
+                    if(!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+                    long size = attrs.size();
+                    // A mapped file is charged its whole size, up to the budget, since its pages are resident while it is hashed
+                    int inFlightLen = (int) Math.min(Math.max(size, MIN_READ_LEN), maxInFlightBytes);
+                    try {
+                        budget.acquire(inFlightLen);
+                    } catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while hashing " + file);
+                    }
+                    executor.execute(() -> {
+                        try {
+                            byte[] hash = hashFile(file, size, inFlightLen);
+                            synchronized(consumerLock){
+                                consumer.accept(file, hash);
+                            }
+                        } catch (IOException e){
+                            failure.compareAndSet(null, e);
+                        } catch (RuntimeException | Error e){
+                            failure.compareAndSet(null, new IOException("Failed to hash " + file, e));
+                        } finally {
+                            budget.release(inFlightLen);
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            shutdownAndAwait(executor);
+        }
+        IOException e = failure.get();
+        if(e != null) throw e;
+    }
+
+    /**
+     * Compute a deterministic Merkle digest of a directory tree, covering the names and contents of all of its regular
+     * files, with the default in-flight bytes budget.
+     * The digest of a regular file is the hash of its contents. The digest of a directory is the key derivation mode
+     * hash of its entries sorted by name, each one encoded as a type byte (0 for a file, 1 for a directory), the little
+     * endian 8 byte length of its UTF-8 name, the name and the 32 byte digest of the entry. So the digest of a
+     * subdirectory is the tree digest of that directory, and a change only affects the digests of the directories above
+     * it. Directories without regular files anywhere below them are left out.
+     * @param root Directory (or single file) to hash
+     * @return The 32 byte tree digest
+     * @throws IOException If the tree can't be walked or a file can't be read
+     */
+    public static byte[] treeDigest(Path root) throws IOException {
+        return treeDigest(root, DEFAULT_MAX_IN_FLIGHT_BYTES, (file, hash) -> {});
+    }
+
+    /**
+     * Same as {@link #treeDigest(Path)}, also passing every file and its hash to the consumer as in
+     * {@link #hashTree(Path, int, BiConsumer)}
+     * @return The 32 byte tree digest
+     * @throws IOException If the tree can't be walked or a file can't be read
+     */
+    public static byte[] treeDigest(Path root, int maxInFlightBytes, BiConsumer<Path, byte[]> consumer) throws IOException {
+        // Entries by name, either the hash of a file or the entries of a directory
+        Map<String, Object> tree = new TreeMap<>();
+        byte[][] rootFile = new byte[1][];
+        hashTree(root, maxInFlightBytes, (file, hash) -> {
+            consumer.accept(file, hash);
+            Path relative = root.relativize(file);
+            if(relative.toString().isEmpty()){
+                rootFile[0] = hash;
+                return;
+            }
+            Map<String, Object> directory = tree;
+            for(int i = 0; i < relative.getNameCount() - 1; i++){
+                directory = subdirectory(directory, relative.getName(i).toString());
+            }
+            directory.put(relative.getFileName().toString(), hash);
+        });
+        return rootFile[0] != null ? rootFile[0] : directoryDigest(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> subdirectory(Map<String, Object> directory, String name){
+        return (Map<String, Object>) directory.computeIfAbsent(name, n -> new TreeMap<String, Object>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] directoryDigest(Map<String, Object> directory){
+        Blake3 hasher = Blake3.newKeyDerivationHasher(TREE_DIGEST_CONTEXT);
+        for(Map.Entry<String, Object> entry : directory.entrySet()){
+            boolean isFile = entry.getValue() instanceof byte[];
+            hasher.update(isFile ? FILE_ENTRY : DIRECTORY_ENTRY);
+            hasher.updateLengthPrefixedUtf8(entry.getKey());
+            hasher.update(isFile ? (byte[]) entry.getValue() : directoryDigest((Map<String, Object>) entry.getValue()));
+        }
+        return hasher.digest();
+    }
+
+    private static byte[] hashFile(Path file, long size, int readLen) throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(size >= MIN_MAP_LEN){
+                hasher.update(channel);
+                return hasher.digest();
+            }
+            byte[] buffer = new byte[readLen];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            while(channel.read(wrapped) != -1){
+                if(!wrapped.hasRemaining()){
+                    hasher.update(buffer, 0, wrapped.position());
+                    wrapped.clear();
+                }
+            }
+            hasher.update(buffer, 0, wrapped.position());
+        }
+        return hasher.digest();
+    }
+
+    // A virtual thread per file when available, file hashing mostly blocks on I/O
+    private static ExecutorService newExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private static void shutdownAndAwait(ExecutorService executor) throws InterruptedIOException {
+        executor.shutdown();
+        try {
+            while(!executor.awaitTermination(1, TimeUnit.MINUTES)){
+                // Keep waiting for the files in flight
+            }
+        } catch (InterruptedException e){
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing files");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that hashes the bytes read from the underlying stream as they pass through, without copying them.
+ * Skipped bytes are read and hashed too, and mark/reset is not supported, so the hash always covers exactly the bytes of
+ * the underlying stream consumed so far. Get the hash from {@link #hasher()} once the end of the stream is reached.
+ */
+public class Blake3InputStream extends FilterInputStream {
+    private final Blake3 hasher;
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Hash the stream with a new default mode hasher
+     * @param in Stream to be read
+     */
+    public Blake3InputStream(InputStream in){
+        this(in, Blake3.newInstance());
+    }
+
+    /**
+     * Hash the stream with the given hasher, for instance a keyed one or one that already holds a prefix
+     * @param in Stream to be read
+     * @param hasher Hasher the bytes read are added to
+     */
+    public Blake3InputStream(InputStream in, Blake3 hasher){
+        super(in);
+        this.hasher = hasher;
+    }
+
+    /**
+     * @return The hasher holding the bytes read so far
+     */
+    public Blake3 hasher(){
+        return hasher;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if(b != -1){
+            singleByte[0] = (byte) b;
+            hasher.update(singleByte, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if(read > 0){
+            hasher.update(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while(skipped < n){
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if(read == -1) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported(){
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit){
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.rctcwyvrn.blake3;
+
+/**
+ * Listener notified of the work done by all hashers, installed with {@link Blake3#setListener(Blake3Listener)}.
+ * Nothing is measured while no listener is installed. Notifications are made on the hashing threads, so implementations
+ * must be thread safe and should be cheap.
+ */
+public interface Blake3Listener {
+
+    /**
+     * Input was added to a hasher by one of its update methods, or hashed by one of the static methods that don't create
+     * a hasher. Each byte of input is reported once, when it is added, whether or not the hash is ever finalized.
+     * The last block of the input stays buffered until more input follows it, so its compression is reported with that
+     * input, or by {@link #finalized} if none follows.
+     * @param inputBytes Number of bytes of input added
+     * @param blockCompressions Number of 64 byte input blocks compressed in chunks
+     * @param parentCompressions Number of parent nodes compressed
+     */
+    default void hashed(long inputBytes, long blockCompressions, long parentCompressions){
+    }
+
+    /**
+     * A hash was finalized by one of the digest methods or finalizeXof. The counts only cover the work of finalizing,
+     * the input was already reported by {@link #hashed}, so a hasher that is finalized several times doesn't report its
+     * input again.
+     * @param blockCompressions Number of input blocks compressed in chunks, the buffered last block unless it is the root
+     * @param parentCompressions Number of parent nodes compressed below the root
+     * @param outputBlocks Number of 64 byte root output blocks computed, 0 for finalizeXof. The root node is compressed
+     *                     once per output block.
+     */
+    default void finalized(long blockCompressions, long parentCompressions, long outputBlocks){
+    }
+
+    /**
+     * Extended output was read from an {@link OutputReader}
+     * @param outputBlocks Number of 64 byte root output blocks computed
+     */
+    default void outputRead(long outputBlocks){
+    }
+
+    /**
+     * A file was hashed by {@link Blake3#update(java.io.File)}, {@link Blake3#update(java.nio.file.Path)},
+     * {@link Blake3#update(java.nio.channels.FileChannel)} or one of their updateParallel variants. Memory mapped files
+     * are read while they are hashed, so only mapping them counts as reading time.
+     * @param bytes Number of bytes read from the file
+     * @param readNanos Time spent reading the file
+     * @param hashNanos Time spent hashing what was read
+     */
+    default void fileHashed(long bytes, long readNanos, long hashNanos){
+    }
+
+    /**
+     * @return A listener that commits the BLAKE3 JDK Flight Recorder events, in the "BLAKE3" category, for recordings
+     * that enable them
+     */
+    static Blake3Listener flightRecorder(){
+        return new FlightRecorderListener();
+    }
+}
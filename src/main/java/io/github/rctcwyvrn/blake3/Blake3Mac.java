@@ -0,0 +1,66 @@
+package io.github.rctcwyvrn.blake3;
+
+import javax.crypto.MacSpi;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+
+// javax.crypto.Mac implementation of the BLAKE3 keyed mode, registered by Blake3Provider as BLAKE3-256
+final class Blake3Mac extends MacSpi implements Cloneable {
+    private Blake3 hasher;
+    // Scratch for engineUpdate(byte), every clone gets its own
+    private byte[] singleByte = new byte[1];
+
+    @Override
+    protected int engineGetMacLength(){
+        return Blake3.OUT_LEN;
+    }
+
+    @Override
+    protected void engineInit(Key key, AlgorithmParameterSpec params) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if(params != null) throw new InvalidAlgorithmParameterException("BLAKE3 keyed mode takes no parameters");
+        byte[] encoded = key == null ? null : key.getEncoded();
+        if(encoded == null || encoded.length != Blake3.KEY_LEN){
+            throw new InvalidKeyException("BLAKE3 keys must be " + Blake3.KEY_LEN + " bytes");
+        }
+        hasher = Blake3.newKeyedHasher(encoded);
+    }
+
+    @Override
+    protected void engineUpdate(byte input){
+        singleByte[0] = input;
+        hasher.update(singleByte, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len){
+        hasher.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input){
+        hasher.update(input);
+    }
+
+    @Override
+    protected byte[] engineDoFinal(){
+        byte[] mac = hasher.digest();
+        hasher.reset();
+        return mac;
+    }
+
+    @Override
+    protected void engineReset(){
+        if(hasher != null) hasher.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Blake3Mac copy = (Blake3Mac) super.clone();
+        copy.singleByte = new byte[1];
+        if(hasher != null) copy.hasher = hasher.copy();
+        return copy;
+    }
+}
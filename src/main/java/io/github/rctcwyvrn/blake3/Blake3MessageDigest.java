@@ -0,0 +1,83 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * {@link MessageDigest} backed directly by a Blake3 hasher, for code written against the JCA.
+ * The provider registers it as BLAKE3-256 and BLAKE3-512, and any other output length can be constructed directly.
+ * Longer outputs are extensions of the shorter ones, the first 32 bytes are always the default length hash.
+ * Cloning copies the hasher state, and resetting doesn't reallocate.
+ */
+public class Blake3MessageDigest extends MessageDigest implements Cloneable {
+    private final int digestLength;
+    private Blake3 hasher;
+    // Scratch for engineUpdate(byte), every clone gets its own
+    private byte[] singleByte = new byte[1];
+
+    /**
+     * Construct a BLAKE3 message digest with the given output length
+     * @param digestLength Output length in bytes
+     * @throws IllegalArgumentException If the length is not positive
+     */
+    public Blake3MessageDigest(int digestLength){
+        this(digestLength, Blake3.newInstance());
+    }
+
+    Blake3MessageDigest(int digestLength, Blake3 hasher){
+        super("BLAKE3-" + 8L * digestLength);
+        if(digestLength <= 0) throw new IllegalArgumentException("Invalid digest length " + digestLength);
+        this.digestLength = digestLength;
+        this.hasher = hasher;
+    }
+
+    @Override
+    protected int engineGetDigestLength(){
+        return digestLength;
+    }
+
+    @Override
+    protected void engineUpdate(byte input){
+        singleByte[0] = input;
+        hasher.update(singleByte, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len){
+        hasher.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input){
+        hasher.update(input);
+    }
+
+    @Override
+    protected byte[] engineDigest(){
+        byte[] digest = hasher.digest(digestLength);
+        hasher.reset();
+        return digest;
+    }
+
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if(len < digestLength) throw new DigestException("Output buffer too small for " + digestLength + " bytes");
+        hasher.digest(buf, offset, digestLength);
+        hasher.reset();
+        return digestLength;
+    }
+
+    @Override
+    protected void engineReset(){
+        hasher.reset();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Blake3MessageDigest copy = (Blake3MessageDigest) super.clone();
+        copy.singleByte = new byte[1];
+        copy.hasher = hasher.copy();
+        return copy;
+    }
+}
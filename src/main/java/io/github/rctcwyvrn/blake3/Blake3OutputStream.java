@@ -0,0 +1,52 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that hashes the bytes written to the underlying stream as they pass through, without copying them.
+ * Get the hash from {@link #hasher()} once everything is written.
+ */
+public class Blake3OutputStream extends FilterOutputStream {
+    private final Blake3 hasher;
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Hash the stream with a new default mode hasher
+     * @param out Stream to be written to
+     */
+    public Blake3OutputStream(OutputStream out){
+        this(out, Blake3.newInstance());
+    }
+
+    /**
+     * Hash the stream with the given hasher, for instance a keyed one or one that already holds a prefix
+     * @param out Stream to be written to
+     * @param hasher Hasher the bytes written are added to
+     */
+    public Blake3OutputStream(OutputStream out, Blake3 hasher){
+        super(out);
+        this.hasher = hasher;
+    }
+
+    /**
+     * @return The hasher holding the bytes written so far
+     */
+    public Blake3 hasher(){
+        return hasher;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        singleByte[0] = (byte) b;
+        hasher.update(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        hasher.update(b, off, len);
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.List;
+
+/**
+ * JCA provider for BLAKE3. It registers the message digests BLAKE3-256 (alias BLAKE3) and BLAKE3-512, and the keyed
+ * mode as the Mac BLAKE3-256, taking a 32 byte key.
+ * <br><br>
+ * Either pass an instance to getInstance, eg <i>MessageDigest.getInstance("BLAKE3-256", new Blake3Provider())</i>,
+ * or register it once with {@link java.security.Security#addProvider(Provider)}.
+ * Some JDKs only accept Mac implementations from providers in jars signed with a JCE code signing certificate,
+ * the message digests work everywhere.
+ */
+public final class Blake3Provider extends Provider {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The provider name, BLAKE3
+     */
+    public static final String NAME = "BLAKE3";
+
+    public Blake3Provider(){
+        super(NAME, "1.4", "BLAKE3 message digests and keyed mode Mac");
+        putService(new Blake3Service(this, "MessageDigest", "BLAKE3-256", List.of("BLAKE3")));
+        putService(new Blake3Service(this, "MessageDigest", "BLAKE3-512", List.of()));
+        putService(new Blake3Service(this, "Mac", "BLAKE3-256", List.of()));
+    }
+
+    // Creates the implementations directly instead of through reflection, so they don't need to be public
+    private static final class Blake3Service extends Service {
+        Blake3Service(Provider provider, String type, String algorithm, List<String> aliases){
+            super(provider, type, algorithm, Blake3Service.class.getName(), aliases, null);
+        }
+
+        @Override
+        public Object newInstance(Object constructorParameter) throws NoSuchAlgorithmException {
+            switch(getType() + "." + getAlgorithm()){
+                case "MessageDigest.BLAKE3-256":
+                    return new Blake3MessageDigest(32);
+                case "MessageDigest.BLAKE3-512":
+                    return new Blake3MessageDigest(64);
+                case "Mac.BLAKE3-256":
+                    return new Blake3Mac();
+                default:
+                    throw new NoSuchAlgorithmException("No " + getType() + " " + getAlgorithm());
+            }
+        }
+    }
+}
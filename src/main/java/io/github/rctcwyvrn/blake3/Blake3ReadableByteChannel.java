@@ -0,0 +1,59 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel that hashes the bytes read from the underlying channel in place, straight out of the caller's buffer.
+ * Get the hash from {@link #hasher()} once the end of the channel is reached.
+ */
+public class Blake3ReadableByteChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private final Blake3 hasher;
+
+    /**
+     * Hash the channel with a new default mode hasher
+     * @param channel Channel to be read
+     */
+    public Blake3ReadableByteChannel(ReadableByteChannel channel){
+        this(channel, Blake3.newInstance());
+    }
+
+    /**
+     * Hash the channel with the given hasher, for instance a keyed one or one that already holds a prefix
+     * @param channel Channel to be read
+     * @param hasher Hasher the bytes read are added to
+     */
+    public Blake3ReadableByteChannel(ReadableByteChannel channel, Blake3 hasher){
+        this.channel = channel;
+        this.hasher = hasher;
+    }
+
+    /**
+     * @return The hasher holding the bytes read so far
+     */
+    public Blake3 hasher(){
+        return hasher;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int position = dst.position();
+        int read = channel.read(dst);
+        if(read > 0){
+            hasher.update(dst, position, read);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isOpen(){
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
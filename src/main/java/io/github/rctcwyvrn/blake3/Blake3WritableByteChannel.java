@@ -0,0 +1,60 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel that hashes the bytes written to the underlying channel in place, straight out of the caller's buffer.
+ * Only the bytes the underlying channel actually accepted are hashed.
+ * Get the hash from {@link #hasher()} once everything is written.
+ */
+public class Blake3WritableByteChannel implements WritableByteChannel {
+    private final WritableByteChannel channel;
+    private final Blake3 hasher;
+
+    /**
+     * Hash the channel with a new default mode hasher
+     * @param channel Channel to be written to
+     */
+    public Blake3WritableByteChannel(WritableByteChannel channel){
+        this(channel, Blake3.newInstance());
+    }
+
+    /**
+     * Hash the channel with the given hasher, for instance a keyed one or one that already holds a prefix
+     * @param channel Channel to be written to
+     * @param hasher Hasher the bytes written are added to
+     */
+    public Blake3WritableByteChannel(WritableByteChannel channel, Blake3 hasher){
+        this.channel = channel;
+        this.hasher = hasher;
+    }
+
+    /**
+     * @return The hasher holding the bytes written so far
+     */
+    public Blake3 hasher(){
+        return hasher;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int written = channel.write(src);
+        if(written > 0){
+            hasher.update(src, position, written);
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen(){
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
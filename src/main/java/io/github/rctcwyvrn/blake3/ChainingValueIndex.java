@@ -0,0 +1,244 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the chaining values of a file's BLAKE3 tree, kept next to the file so that after a partial modification only
+ * the chunk groups that changed need to be hashed again.
+ * <br><br>
+ * The leaves of the index are chunk groups of 2^chunkGroupLog chunks (1 KiB each), the last one possibly shorter. When the
+ * file changes, the dirty groups are read and hashed again, and the root hash is rebuilt from the chaining values of all
+ * groups, which costs one parent compression per group and no I/O. Smaller groups make updates cheaper, larger groups
+ * make the index smaller (32 bytes per group).
+ * <br><br>
+ * The encoding is the 4 byte magic "B3CV", a version byte, the chunk group log, two zero bytes, the little endian 8 byte
+ * content length and modification time (in nanoseconds), the 32 byte root hash, and the 32 byte chaining value of every
+ * group. Only the default (unkeyed) hash mode is supported. Indexes are not thread safe.
+ */
+public final class ChainingValueIndex {
+    private static final byte[] MAGIC = {'B', '3', 'C', 'V'};
+    private static final int VERSION = 1;
+    private static final int HEADER_LEN = 56;
+    private static final int HASH_OFFSET = 24;
+
+    private final int chunkGroupLog;
+    private final int groupLen;
+    private long contentLen;
+    private long lastModified;
+    private final byte[] rootHash = new byte[32];
+    // 8 words per group
+    private int[] groupCVs;
+    private final BitSet dirtyGroups = new BitSet();
+
+    private ChainingValueIndex(int chunkGroupLog, long contentLen, long lastModified, int[] groupCVs){
+        this.chunkGroupLog = chunkGroupLog;
+        this.groupLen = BaoOutboard.groupLen(chunkGroupLog);
+        this.contentLen = contentLen;
+        this.lastModified = lastModified;
+        this.groupCVs = groupCVs;
+    }
+
+    /**
+     * Build the index of a file by hashing all of it
+     * @param file File to be indexed
+     * @param chunkGroupLog Log2 of the number of chunks per leaf of the index
+     * @return The index
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the chunk group log is not between 0 and 20, or the index would be too large
+     */
+    public static ChainingValueIndex build(Path file, int chunkGroupLog) throws IOException {
+        ChainingValueIndex index = new ChainingValueIndex(chunkGroupLog, 0, 0, new int[8]);
+        index.dirtyGroups.set(0);
+        index.update(file);
+        return index;
+    }
+
+    /**
+     * Read an index from its encoding
+     * @param encoded The encoded index, as returned by {@link #toByteArray()}
+     * @return The index
+     * @throws IllegalArgumentException If the encoding is not a valid index of a supported version
+     */
+    public static ChainingValueIndex wrap(byte[] encoded){
+        if(encoded.length < HEADER_LEN || !Arrays.equals(MAGIC, Arrays.copyOf(encoded, MAGIC.length))){
+            throw new IllegalArgumentException("Not a chaining value index");
+        }
+        if(encoded[4] != VERSION) throw new IllegalArgumentException("Unsupported index version " + encoded[4]);
+        ByteBuffer header = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+        int chunkGroupLog = encoded[5];
+        long contentLen = header.getLong(8);
+        if(contentLen < 0 || encoded[6] != 0 || encoded[7] != 0
+                || encodedLen(contentLen, BaoOutboard.groupLen(chunkGroupLog)) != encoded.length){
+            throw new IllegalArgumentException("Index doesn't match its content length of " + contentLen);
+        }
+        int[] groupCVs = new int[(encoded.length - HEADER_LEN) / 4];
+        Blake3.wordsFromLEBytes(encoded, HEADER_LEN, groupCVs, groupCVs.length);
+        ChainingValueIndex index = new ChainingValueIndex(chunkGroupLog, contentLen, header.getLong(16), groupCVs);
+        System.arraycopy(encoded, HASH_OFFSET, index.rootHash, 0, 32);
+        return index;
+    }
+
+    /**
+     * @return The encoded index
+     */
+    public byte[] toByteArray(){
+        byte[] encoded = new byte[HEADER_LEN + groupCVs.length * 4];
+        ByteBuffer header = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+        System.arraycopy(MAGIC, 0, encoded, 0, MAGIC.length);
+        encoded[4] = VERSION;
+        encoded[5] = (byte) chunkGroupLog;
+        header.putLong(8, contentLen);
+        header.putLong(16, lastModified);
+        System.arraycopy(rootHash, 0, encoded, HASH_OFFSET, 32);
+        Blake3.wordsToLEBytes(groupCVs, encoded, HEADER_LEN, groupCVs.length * 4);
+        return encoded;
+    }
+
+    /**
+     * @return The 32 byte BLAKE3 hash of the file as of the last update
+     */
+    public byte[] hash(){
+        return rootHash.clone();
+    }
+
+    /**
+     * @return The length of the file as of the last update
+     */
+    public long contentLength(){
+        return contentLen;
+    }
+
+    /**
+     * @return Log2 of the number of chunks per leaf of the index
+     */
+    public int chunkGroupLog(){
+        return chunkGroupLog;
+    }
+
+    /**
+     * Mark a byte range of the file as modified, so that the next update hashes the chunk groups overlapping it again.
+     * Ranges beyond the indexed length are ignored, changes in length are always accounted for.
+     * @param offset Offset of the range in the file
+     * @param len Length of the range
+     * @throws IllegalArgumentException If the offset or length is negative
+     */
+    public void markDirty(long offset, long len){
+        if(offset < 0 || len < 0) throw new IllegalArgumentException("Invalid range at " + offset + " of length " + len);
+        if(len == 0 || offset >= contentLen) return;
+        long end = Math.min(contentLen, offset + len);
+        dirtyGroups.set((int) (offset / groupLen), (int) ((end - 1) / groupLen) + 1);
+    }
+
+    /**
+     * Check the size and modification time of the file against the ones recorded by the last update
+     * @param file The indexed file
+     * @return Whether the file looks unchanged and no range has been marked dirty since the last update
+     * @throws IOException If the file attributes cannot be read
+     */
+    public boolean isUpToDate(Path file) throws IOException {
+        return dirtyGroups.isEmpty() && Files.size(file) == contentLen && modificationTime(file) == lastModified;
+    }
+
+    /**
+     * Bring the index up to date with the file, hashing again only the chunk groups marked dirty and the ones affected by a
+     * change in length. If the file looks modified but no range was marked dirty, all of it is hashed again.
+     * Marked ranges are trusted, a modification outside of them goes unnoticed.
+     * @param file The indexed file
+     * @return The number of chunk groups that were hashed
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the file has grown too large for an index with this chunk group log
+     */
+    public long update(Path file) throws IOException {
+        if(isUpToDate(file)) return 0;
+        // Read the time first, so that a modification while hashing shows up at the next check
+        long modified = modificationTime(file);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(dirtyGroups.isEmpty()) dirtyGroups.set(0, groupCVs.length / 8);
+            resize(size);
+
+            ByteBuffer group = ByteBuffer.allocateDirect((int) Math.min(groupLen, Math.max(size, 1)));
+            int[] cv = new int[8];
+            long hashed = 0;
+            for(int i = dirtyGroups.nextSetBit(0); i >= 0; i = dirtyGroups.nextSetBit(i + 1)){
+                long start = (long) i * groupLen;
+                int len = (int) Math.min(groupLen, size - start);
+                group.clear().limit(len);
+                while(group.hasRemaining()){
+                    if(channel.read(group, start + group.position()) == -1){
+                        throw new IOException("File is shorter than its size");
+                    }
+                }
+                Blake3.subtreeChainingValue(group, 0, len, start / Blake3.CHUNK_LEN, Blake3.IV, 0, cv);
+                System.arraycopy(cv, 0, groupCVs, i * 8, 8);
+                if(groupCVs.length == 8){
+                    // A single group is the root itself, which has no chaining value to build the hash from
+                    Blake3 hasher = Blake3.newInstance();
+                    hasher.update(group.flip());
+                    hasher.digest(rootHash, 0, 32);
+                }
+                hashed++;
+            }
+            if(groupCVs.length > 8) rebuildRootHash();
+            contentLen = size;
+            lastModified = modified;
+            dirtyGroups.clear();
+            return hashed;
+        }
+    }
+
+    // Resize the group CVs to a new content length, marking the groups whose length or content changed as dirty
+    private void resize(long size){
+        if(size == contentLen) return;
+        int groups = (encodedLen(size, groupLen) - HEADER_LEN) / 32;
+        int previousGroups = groupCVs.length / 8;
+        groupCVs = Arrays.copyOf(groupCVs, groups * 8);
+        int firstChanged = (int) (Math.min(size, contentLen) / groupLen);
+        if(firstChanged < groups) dirtyGroups.set(firstChanged, groups);
+        if(groups < previousGroups) dirtyGroups.clear(groups, previousGroups);
+        // The hash of a single group always has to be computed from its content
+        if(groups == 1) dirtyGroups.set(0);
+    }
+
+    private void rebuildRootHash(){
+        int groups = groupCVs.length / 8;
+        int[][] scratch = new int[2 * 64][8];
+        int left = Integer.highestOneBit(groups - 1);
+        subtreeChainingValue(0, left, scratch, 0, scratch[0]);
+        subtreeChainingValue(left, groups - left, scratch, 0, scratch[1]);
+        Blake3.parentRootOutputBytes(scratch[0], scratch[1], Blake3.IV, 0, rootHash, 0, 32);
+    }
+
+    // The chaining value of the subtree over groups [first, first + count), using scratch rows from 2 * depth + 2 onwards
+    private void subtreeChainingValue(int first, int count, int[][] scratch, int depth, int[] out){
+        if(count == 1){
+            System.arraycopy(groupCVs, first * 8, out, 0, 8);
+            return;
+        }
+        int left = Integer.highestOneBit(count - 1);
+        int[] leftCV = scratch[2 * depth + 2];
+        int[] rightCV = scratch[2 * depth + 3];
+        subtreeChainingValue(first, left, scratch, depth + 1, leftCV);
+        subtreeChainingValue(first + left, count - left, scratch, depth + 1, rightCV);
+        Blake3.parentChainingValue(leftCV, rightCV, Blake3.IV, 0, out);
+    }
+
+    private static long modificationTime(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+    }
+
+    private static int encodedLen(long contentLen, int groupLen){
+        long len = HEADER_LEN + 32 * BaoOutboard.groupCount(contentLen, groupLen);
+        if(len > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Index would be too large, use larger chunk groups");
+        return (int) len;
+    }
+}
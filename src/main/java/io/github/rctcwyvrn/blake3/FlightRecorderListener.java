@@ -0,0 +1,109 @@
+package io.github.rctcwyvrn.blake3;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Commits a JFR event for every notification. Only loaded by Blake3Listener.flightRecorder(), so the jdk.jfr module is
+// not needed otherwise.
+final class FlightRecorderListener implements Blake3Listener {
+
+    @Name("io.github.rctcwyvrn.blake3.Hashed")
+    @Label("BLAKE3 Input Hashed")
+    @Category("BLAKE3")
+    static final class HashedEvent extends Event {
+        @Label("Input Bytes")
+        @DataAmount
+        long inputBytes;
+
+        @Label("Block Compressions")
+        long blockCompressions;
+
+        @Label("Parent Compressions")
+        long parentCompressions;
+    }
+
+    @Name("io.github.rctcwyvrn.blake3.Finalized")
+    @Label("BLAKE3 Hash Finalized")
+    @Category("BLAKE3")
+    static final class FinalizedEvent extends Event {
+        @Label("Block Compressions")
+        long blockCompressions;
+
+        @Label("Parent Compressions")
+        long parentCompressions;
+
+        @Label("Output Blocks")
+        long outputBlocks;
+    }
+
+    @Name("io.github.rctcwyvrn.blake3.OutputRead")
+    @Label("BLAKE3 Extended Output Read")
+    @Category("BLAKE3")
+    static final class OutputReadEvent extends Event {
+        @Label("Output Blocks")
+        long outputBlocks;
+    }
+
+    @Name("io.github.rctcwyvrn.blake3.FileHashed")
+    @Label("BLAKE3 File Hashed")
+    @Category("BLAKE3")
+    static final class FileHashedEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Read Time")
+        @Timespan
+        long readNanos;
+
+        @Label("Hash Time")
+        @Timespan
+        long hashNanos;
+    }
+
+    @Override
+    public void hashed(long inputBytes, long blockCompressions, long parentCompressions){
+        HashedEvent event = new HashedEvent();
+        if(event.shouldCommit()){
+            event.inputBytes = inputBytes;
+            event.blockCompressions = blockCompressions;
+            event.parentCompressions = parentCompressions;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void finalized(long blockCompressions, long parentCompressions, long outputBlocks){
+        FinalizedEvent event = new FinalizedEvent();
+        if(event.shouldCommit()){
+            event.blockCompressions = blockCompressions;
+            event.parentCompressions = parentCompressions;
+            event.outputBlocks = outputBlocks;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void outputRead(long outputBlocks){
+        OutputReadEvent event = new OutputReadEvent();
+        if(event.shouldCommit()){
+            event.outputBlocks = outputBlocks;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void fileHashed(long bytes, long readNanos, long hashNanos){
+        FileHashedEvent event = new FileHashedEvent();
+        if(event.shouldCommit()){
+            event.bytes = bytes;
+            event.readNanos = readNanos;
+            event.hashNanos = hashNanos;
+            event.commit();
+        }
+    }
+}
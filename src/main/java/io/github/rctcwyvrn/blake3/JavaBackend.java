@@ -0,0 +1,55 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+
+// The portable scalar backend. It doesn't batch chunks, hashers use their own scalar chunk state instead, so its
+// chunk hashing handles a single chunk and only serves callers of the SPI.
+final class JavaBackend implements Blake3Backend {
+    private final int[] chainingValue = new int[8];
+    private final int[] blockWords = new int[16];
+
+    @Override
+    public String name(){
+        return "java";
+    }
+
+    @Override
+    public int degree(){
+        return 1;
+    }
+
+    @Override
+    public Blake3Backend newInstance(){
+        return new JavaBackend();
+    }
+
+    @Override
+    public void compress(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags, int[] out){
+        Blake3.compress(chainingValue, blockWords, counter, blockLen, flags, out, 0, true);
+    }
+
+    @Override
+    public void hashChunks(byte[] input, int offset, int[] key, long chunkCounter, int flags, int[] cvs){
+        System.arraycopy(key, 0, chainingValue, 0, 8);
+        for(int block = 0; block < Blake3.CHUNK_LEN / Blake3.BLOCK_LEN; block++){
+            Blake3.wordsFromLEBytes(input, offset + block * Blake3.BLOCK_LEN, blockWords, 16);
+            compressChunkBlock(block, chunkCounter, flags);
+        }
+        System.arraycopy(chainingValue, 0, cvs, 0, 8);
+    }
+
+    @Override
+    public void hashChunks(ByteBuffer input, int index, int[] key, long chunkCounter, int flags, int[] cvs){
+        System.arraycopy(key, 0, chainingValue, 0, 8);
+        for(int block = 0; block < Blake3.CHUNK_LEN / Blake3.BLOCK_LEN; block++){
+            Blake3.wordsFromLEBytes(input, index + block * Blake3.BLOCK_LEN, blockWords, 16);
+            compressChunkBlock(block, chunkCounter, flags);
+        }
+        System.arraycopy(chainingValue, 0, cvs, 0, 8);
+    }
+
+    private void compressChunkBlock(int block, long chunkCounter, int flags){
+        int blockFlags = block == 0 ? Blake3.CHUNK_START : block == Blake3.CHUNK_LEN / Blake3.BLOCK_LEN - 1 ? Blake3.CHUNK_END : 0;
+        Blake3.compress(chainingValue, blockWords, chunkCounter, Blake3.BLOCK_LEN, flags | blockFlags, chainingValue, 0, false);
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A key derivation context string together with the context key derived from it, so that key derivation hashers for a
+ * known context cost no more to create than {@link Blake3#newInstance()}.
+ * Contexts are immutable and can be shared between threads.
+ * Up to 64 contexts are cached, which also makes {@link Blake3#newKeyDerivationHasher(String)} cheap for a handful of
+ * fixed contexts. Looking up a cached context takes no lock. When a new context fills the cache, other entries are
+ * evicted in no particular order.
+ */
+public final class KeyDerivationContext {
+    private static final int CACHE_SIZE = 64;
+    private static final Map<String, KeyDerivationContext> CACHE = new ConcurrentHashMap<>(CACHE_SIZE * 2);
+
+    private final String context;
+    private final int[] contextKey;
+
+    private KeyDerivationContext(String context){
+        this.context = context;
+        this.contextKey = Blake3.deriveContextKey(context);
+    }
+
+    /**
+     * Derive the context key of a context string.
+     * The context string should be hardcoded, globally unique, and application-specific.
+     * @param context Context string used to derive keys.
+     * @return The context
+     */
+    public static KeyDerivationContext of(String context){
+        KeyDerivationContext cached = CACHE.get(context);
+        if(cached != null){
+            return cached;
+        }
+        // A context derived concurrently by another thread is used instead
+        KeyDerivationContext derived = new KeyDerivationContext(context);
+        cached = CACHE.putIfAbsent(context, derived);
+        if(cached != null){
+            return cached;
+        }
+        Iterator<String> keys = CACHE.keySet().iterator();
+        while(CACHE.size() > CACHE_SIZE && keys.hasNext()){
+            if(!keys.next().equals(context)){
+                keys.remove();
+            }
+        }
+        return derived;
+    }
+
+    /**
+     * @return The context string
+     */
+    public String context(){
+        return context;
+    }
+
+    // The 8 word context key, which must not be modified
+    int[] contextKey(){
+        return contextKey;
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+
+// Backend calling the upstream C implementation of BLAKE3 through JNI, see src/main/native.
+// The library is loaded from the path in the blake3.native.library system property, or as blake3jni from
+// java.library.path, and this backend is only available when that succeeds.
+final class NativeBackend implements BatchBackend {
+    static final String LIBRARY_PROPERTY = "blake3.native.library";
+    // Chunks per call, enough to fill the widest SIMD degree of the C code and amortize the cost of the JNI transition
+    private static final int DEGREE = 16;
+
+    // Input of heap buffers without an accessible array is staged here
+    private byte[] buffer;
+
+    // The SIMD degree of the C code, e.g. 8 with AVX2, and 1 for its portable implementation
+    private static native int simdDegree();
+
+    private static native void compressXof(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags,
+                                           int[] out);
+
+    private static native void hashChunks(byte[] input, int offset, int chunks, int[] key, long chunkCounter, int flags,
+                                          int[] cvs);
+
+    private static native void hashChunksDirect(ByteBuffer input, int index, int chunks, int[] key, long chunkCounter,
+                                                int flags, int[] cvs);
+
+    private static native void rootOutputBlocks(int[] chainingValue, int[] blockWords, long outputCounter, int blockLen,
+                                                int flags, int blocks, byte[] out, int offset);
+
+    // Whether the library could be loaded, called once by Backends
+    static boolean load(){
+        try {
+            String path = System.getProperty(LIBRARY_PROPERTY);
+            if(path != null){
+                System.load(path);
+            } else {
+                System.loadLibrary("blake3jni");
+            }
+            // Fails if the library doesn't contain the glue of this class
+            return simdDegree() > 0;
+        } catch (UnsatisfiedLinkError | SecurityException e){
+            return false;
+        }
+    }
+
+    @Override
+    public String name(){
+        return "native";
+    }
+
+    @Override
+    public int degree(){
+        return DEGREE;
+    }
+
+    @Override
+    public Blake3Backend newInstance(){
+        return new NativeBackend();
+    }
+
+    @Override
+    public void compress(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags, int[] out){
+        compressXof(chainingValue, blockWords, counter, blockLen, flags, out);
+    }
+
+    @Override
+    public void hashChunks(byte[] input, int offset, int[] key, long chunkCounter, int flags, int[] cvs){
+        hashChunks(input, offset, DEGREE, key, chunkCounter, flags, cvs);
+    }
+
+    @Override
+    public void hashChunks(ByteBuffer input, int index, int[] key, long chunkCounter, int flags, int[] cvs){
+        if(input.isDirect()){
+            hashChunksDirect(input, index, DEGREE, key, chunkCounter, flags, cvs);
+        } else if(input.hasArray()){
+            hashChunks(input.array(), input.arrayOffset() + index, DEGREE, key, chunkCounter, flags, cvs);
+        } else {
+            if(buffer == null) buffer = new byte[DEGREE * Blake3.CHUNK_LEN];
+            input.duplicate().position(index).get(buffer);
+            hashChunks(buffer, 0, DEGREE, key, chunkCounter, flags, cvs);
+        }
+    }
+
+    @Override
+    public void rootOutputBlocks(int[] chainingValue, int[] blockWords, long outputCounter, int blockLen, int flags,
+                                 byte[] out, int offset){
+        rootOutputBlocks(chainingValue, blockWords, outputCounter, blockLen, flags, DEGREE, out, offset);
+    }
+
+    // Inputs of at most one chunk are too short to be worth a native call each
+    @Override
+    public void hashSingleChunkRoots(byte[][] inputs, int[] inputIndices, int first, int[] key, int flags, byte[] outputs){
+        for(int i = first; i < first + DEGREE; i++){
+            int index = inputIndices[i];
+            Blake3.hashSingleChunkRoot(inputs[index], 0, inputs[index].length, key, flags, outputs, index * Blake3.OUT_LEN);
+        }
+    }
+}
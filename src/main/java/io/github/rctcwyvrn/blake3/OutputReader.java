@@ -0,0 +1,122 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Reader of the extended output of a finalized Blake3 tree, created by {@link Blake3#finalizeXof()}.
+ * The output is a stream of up to 2^64 bytes, every 64 byte block of which can be computed independently, so the reader
+ * can seek anywhere in the output and, when SIMD is available, computes several blocks at once.
+ * The first 32 bytes of the output are the default length hash.
+ * Readers are not thread safe.
+ */
+public final class OutputReader {
+    private static final int BLOCK_LEN = Blake3.BLOCK_LEN;
+
+    private final int[] inputChainingValue = new int[8];
+    private final int[] blockWords = new int[16];
+    private final int blockLen;
+    private final int flags;
+
+    private final int[] outputWords = new int[16];
+    private final BatchBackend batchHasher;
+    private final int batchLen;
+    // Holds the block containing position when the caller's range does not cover whole blocks
+    private final byte[] block = new byte[BLOCK_LEN];
+    // Output for direct buffers is staged here
+    private final byte[] buffer;
+    private long position = 0;
+
+    // The flags already include ROOT. Blocks are batched when the backend is a BatchBackend.
+    OutputReader(int[] inputChainingValue, int[] blockWords, int blockLen, int flags, Blake3Backend backend){
+        System.arraycopy(inputChainingValue, 0, this.inputChainingValue, 0, 8);
+        System.arraycopy(blockWords, 0, this.blockWords, 0, 16);
+        this.blockLen = blockLen;
+        this.flags = flags;
+        this.batchHasher = BatchBackend.of(backend);
+        this.batchLen = batchHasher == null ? Integer.MAX_VALUE : batchHasher.degree() * BLOCK_LEN;
+        this.buffer = new byte[batchHasher == null ? BLOCK_LEN : batchLen];
+    }
+
+    /**
+     * @return The position in the output of the next byte that will be read
+     */
+    public long position(){
+        return position;
+    }
+
+    /**
+     * Move the reader to the given position in the output
+     * @param position Byte position in the output
+     * @throws IllegalArgumentException If the position is negative
+     */
+    public void seek(long position){
+        if(position < 0) throw new IllegalArgumentException("Negative output position " + position);
+        this.position = position;
+    }
+
+    /**
+     * Fill the array with the next bytes of output
+     * @param out Array to be filled
+     */
+    public void fill(byte[] out){
+        fill(out, 0, out.length);
+    }
+
+    /**
+     * Write the next len bytes of output to the array
+     * @param out Array the output is written to
+     * @param offset Offset of the first byte of output
+     * @param len Number of bytes of output
+     * @throws IndexOutOfBoundsException If the range is not within the array
+     */
+    public void fill(byte[] out, int offset, int len){
+        Objects.checkFromIndexSize(offset, len, out.length);
+        Blake3Listener listener = Blake3.listener();
+        if(listener != null && len > 0){
+            listener.outputRead((position + len - 1) / BLOCK_LEN - position / BLOCK_LEN + 1);
+        }
+        while(len > 0){
+            int blockOffset = (int) (position % BLOCK_LEN);
+            int take;
+            if(blockOffset == 0 && len >= batchLen){
+                batchHasher.rootOutputBlocks(inputChainingValue, blockWords, position / BLOCK_LEN, blockLen, flags, out, offset);
+                take = batchLen;
+            } else if(blockOffset == 0 && len >= BLOCK_LEN){
+                outputBlock(position / BLOCK_LEN, out, offset);
+                take = BLOCK_LEN;
+            } else {
+                outputBlock(position / BLOCK_LEN, block, 0);
+                take = Math.min(BLOCK_LEN - blockOffset, len);
+                System.arraycopy(block, blockOffset, out, offset, take);
+            }
+            offset += take;
+            len -= take;
+            position += take;
+        }
+    }
+
+    /**
+     * Fill the bytes between the position and the limit of the buffer with the next bytes of output,
+     * advancing the position of the buffer to its limit
+     * @param out Heap or direct buffer the output is written to
+     */
+    public void fill(ByteBuffer out){
+        if(out.hasArray()){
+            fill(out.array(), out.arrayOffset() + out.position(), out.remaining());
+            out.position(out.limit());
+            return;
+        }
+        while(out.hasRemaining()){
+            int take = Math.min(buffer.length, out.remaining());
+            fill(buffer, 0, take);
+            out.put(buffer, 0, take);
+        }
+    }
+
+    // Write the 64 byte output block with the given counter
+    private void outputBlock(long outputCounter, byte[] out, int offset){
+        Blake3.compress(inputChainingValue, blockWords, outputCounter, blockLen, flags, outputWords, 0, true);
+        Blake3.wordsToLEBytes(outputWords, out, offset, BLOCK_LEN);
+    }
+}
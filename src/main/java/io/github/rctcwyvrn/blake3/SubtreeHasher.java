@@ -0,0 +1,151 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Computes and merges the chaining values of subtrees of the BLAKE3 tree, so that the ranges of a large input can be
+ * hashed independently, for instance on different machines, and combined into the hash of the whole input.
+ * <br><br>
+ * A subtree is either a complete subtree of 2^k chunks (1 KiB each) starting at a chunk offset that is a multiple of 2^k,
+ * or the last subtree of the input, which may be shorter. Two sibling subtrees are merged into their parent: the left one
+ * is always complete, and the right one covers at most as many chunks as the left. The final merge of the two children of
+ * the root produces the hash instead of a chaining value. An input of a single chunk has no parents, hash it with
+ * {@link Blake3} instead.
+ * <br><br>
+ * For example an input of 5 chunks splits into the subtrees of chunks 0-3 and chunk 4, and its hash is
+ * <i>rootHash(chainingValue(chunks 0-3, 0), chainingValue(chunk 4, 4), 32)</i>.
+ * The chaining value of chunks 0-3 can also be merged from those of chunks 0-1 and 2-3, and so on.
+ * Subtree hashers are immutable and can be shared between threads.
+ */
+public final class SubtreeHasher {
+    private static final int CV_LEN = 32;
+
+    private final int[] key;
+    private final int flags;
+
+    private SubtreeHasher(int[] key, int flags){
+        this.key = key;
+        this.flags = flags;
+    }
+
+    /**
+     * Construct a subtree hasher for the default hash mode
+     */
+    public static SubtreeHasher newInstance(){
+        return new SubtreeHasher(Blake3.IV, 0);
+    }
+
+    /**
+     * Construct a subtree hasher for the keyed mode
+     * @param key The 32 byte key
+     * @throws IllegalStateException If the key is not 32 bytes
+     */
+    public static SubtreeHasher newKeyedHasher(byte[] key){
+        if(!(key.length == Blake3.KEY_LEN)) throw new IllegalStateException("Invalid key length");
+        return new SubtreeHasher(Blake3.wordsFromLEBytes(key), Blake3.KEYED_HASH);
+    }
+
+    /**
+     * Construct a subtree hasher for the key derivation mode
+     * @param context Context string used to derive keys.
+     */
+    public static SubtreeHasher newKeyDerivationHasher(String context){
+        return newKeyDerivationHasher(KeyDerivationContext.of(context));
+    }
+
+    /**
+     * Construct a subtree hasher for the key derivation mode
+     * @param context The context
+     */
+    public static SubtreeHasher newKeyDerivationHasher(KeyDerivationContext context){
+        return new SubtreeHasher(context.contextKey(), Blake3.DERIVE_KEY_MATERIAL);
+    }
+
+    /**
+     * Compute the chaining value of a subtree
+     * @param input Array holding the bytes of the subtree
+     * @param offset Offset of the subtree in the array
+     * @param len Length of the subtree, a power of two number of chunks unless it is the last subtree of the input
+     * @param chunkOffset Index of the first chunk of the subtree in the whole input, i.e. its byte offset divided by 1024
+     * @return The 32 byte chaining value
+     * @throws IllegalArgumentException If the subtree is empty or not aligned to its chunk offset
+     * @throws IndexOutOfBoundsException If the range is not within the array
+     */
+    public byte[] chainingValue(byte[] input, int offset, int len, long chunkOffset){
+        Objects.checkFromIndexSize(offset, len, input.length);
+        return chainingValue(ByteBuffer.wrap(input), offset, len, chunkOffset);
+    }
+
+    /**
+     * Compute the chaining value of the subtree between the position and the limit of the buffer, which is not modified
+     * @param input Heap, direct or mapped buffer holding the bytes of the subtree
+     * @param chunkOffset Index of the first chunk of the subtree in the whole input, i.e. its byte offset divided by 1024
+     * @return The 32 byte chaining value
+     * @throws IllegalArgumentException If the subtree is empty or not aligned to its chunk offset
+     */
+    public byte[] chainingValue(ByteBuffer input, long chunkOffset){
+        return chainingValue(input, input.position(), input.remaining(), chunkOffset);
+    }
+
+    private byte[] chainingValue(ByteBuffer input, int index, int len, long chunkOffset){
+        if(len == 0) throw new IllegalArgumentException("Empty subtree");
+        long chunks = (len + Blake3.CHUNK_LEN - 1) / Blake3.CHUNK_LEN;
+        long subtreeChunks = Long.highestOneBit(chunks - 1) << 1;
+        if(chunkOffset < 0 || (chunks > 1 && chunkOffset % subtreeChunks != 0)){
+            throw new IllegalArgumentException("A subtree of " + chunks + " chunks can't start at chunk " + chunkOffset);
+        }
+        int[] cv = new int[8];
+        Blake3.subtreeChainingValue(input, index, len, chunkOffset, key, flags, cv);
+        return cvToBytes(cv);
+    }
+
+    /**
+     * Merge the chaining values of two sibling subtrees into the chaining value of their parent
+     * @param left 32 byte chaining value of the left subtree
+     * @param right 32 byte chaining value of the right subtree
+     * @return The 32 byte chaining value of the parent
+     * @throws IllegalArgumentException If a chaining value is not 32 bytes
+     */
+    public byte[] merge(byte[] left, byte[] right){
+        int[] cv = new int[8];
+        Blake3.parentChainingValue(bytesToCV(left), bytesToCV(right), key, flags, cv);
+        return cvToBytes(cv);
+    }
+
+    /**
+     * Merge the chaining values of the two children of the root into the hash of the whole input
+     * @param left 32 byte chaining value of the left subtree
+     * @param right 32 byte chaining value of the right subtree
+     * @param hashLen The number of bytes of hash to return
+     * @return The hash, identical to the one of a {@link Blake3} hasher of the same mode given the whole input
+     * @throws IllegalArgumentException If a chaining value is not 32 bytes
+     */
+    public byte[] rootHash(byte[] left, byte[] right, int hashLen){
+        byte[] hash = new byte[hashLen];
+        Blake3.parentRootOutputBytes(bytesToCV(left), bytesToCV(right), key, flags, hash, 0, hashLen);
+        return hash;
+    }
+
+    /**
+     * Merge the chaining values of the two children of the root into a reader of the extended output of the whole input
+     * @param left 32 byte chaining value of the left subtree
+     * @param right 32 byte chaining value of the right subtree
+     * @return A reader positioned at the start of the output
+     * @throws IllegalArgumentException If a chaining value is not 32 bytes
+     */
+    public OutputReader rootOutput(byte[] left, byte[] right){
+        return Blake3.parentRootOutputReader(bytesToCV(left), bytesToCV(right), key, flags);
+    }
+
+    private static int[] bytesToCV(byte[] cv){
+        if(cv.length != CV_LEN) throw new IllegalArgumentException("Chaining values are " + CV_LEN + " bytes");
+        return Blake3.wordsFromLEBytes(cv);
+    }
+
+    private static byte[] cvToBytes(int[] cv){
+        byte[] bytes = new byte[CV_LEN];
+        Blake3.wordsToLEBytes(cv, bytes, 0, CV_LEN);
+        return bytes;
+    }
+}
@@ -0,0 +1,283 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ROR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * Hashes as many chunks (or output blocks) at once as the preferred int species has lanes, using the incubating Vector API.
+ * Only present in the Java 17+ layer of the multi-release jar, and only used when jdk.incubator.vector is resolved at runtime.
+ */
+final class VectorBackend implements BatchBackend {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Message words of the current block of every lane, transposed so that word w of all lanes is contiguous.
+    // The chaining values and counters of the lanes are stored the same way between blocks.
+    private final int[] transposed = new int[16 * LANES];
+    private final int[] cvLanes = new int[8 * LANES];
+    private final int[] counterLanes = new int[2 * LANES];
+    // Block length and flags of every lane
+    private final int[] parameterLanes = new int[2 * LANES];
+    private final int[] outputLanes = new int[16 * LANES];
+
+    @Override
+    public String name(){
+        return "vector";
+    }
+
+    @Override
+    public int degree(){
+        return LANES;
+    }
+
+    @Override
+    public Blake3Backend newInstance(){
+        return new VectorBackend();
+    }
+
+    // A single block gains nothing from the lanes
+    @Override
+    public void compress(int[] chainingValue, int[] blockWords, long counter, int blockLen, int flags, int[] out){
+        Blake3.compress(chainingValue, blockWords, counter, blockLen, flags, out, 0, true);
+    }
+
+    @Override
+    public void hashChunks(byte[] input, int offset, int[] key, long chunkCounter, int flags, int[] cvs){
+        initializeLanes(key, chunkCounter);
+        for(int block = 0; block < Blake3.CHUNK_LEN / Blake3.BLOCK_LEN; block++){
+            int blockOffset = offset + block * Blake3.BLOCK_LEN;
+            for(int lane = 0; lane < LANES; lane++){
+                int laneOffset = blockOffset + lane * Blake3.CHUNK_LEN;
+                for(int word = 0; word < 16; word++){
+                    transposed[word * LANES + lane] = (int) INT_LE.get(input, laneOffset + 4 * word);
+                }
+            }
+            setParameters(Blake3.BLOCK_LEN, flags | blockFlags(block));
+            compressBlock(false);
+        }
+        storeChainingValues(cvs);
+    }
+
+    @Override
+    public void hashChunks(ByteBuffer input, int index, int[] key, long chunkCounter, int flags, int[] cvs){
+        initializeLanes(key, chunkCounter);
+        for(int block = 0; block < Blake3.CHUNK_LEN / Blake3.BLOCK_LEN; block++){
+            int blockIndex = index + block * Blake3.BLOCK_LEN;
+            for(int lane = 0; lane < LANES; lane++){
+                int laneIndex = blockIndex + lane * Blake3.CHUNK_LEN;
+                for(int word = 0; word < 16; word++){
+                    transposed[word * LANES + lane] = (int) BUFFER_INT_LE.get(input, laneIndex + 4 * word);
+                }
+            }
+            setParameters(Blake3.BLOCK_LEN, flags | blockFlags(block));
+            compressBlock(false);
+        }
+        storeChainingValues(cvs);
+    }
+
+    @Override
+    public void rootOutputBlocks(int[] chainingValue, int[] blockWords, long outputCounter, int blockLen, int flags,
+                                 byte[] out, int offset){
+        initializeLanes(chainingValue, outputCounter);
+        for(int word = 0; word < 16; word++){
+            for(int lane = 0; lane < LANES; lane++){
+                transposed[word * LANES + lane] = blockWords[word];
+            }
+        }
+        setParameters(blockLen, flags);
+        compressBlock(true);
+        for(int lane = 0; lane < LANES; lane++){
+            int laneOffset = offset + lane * Blake3.BLOCK_LEN;
+            for(int word = 0; word < 16; word++){
+                INT_LE.set(out, laneOffset + 4 * word, outputLanes[word * LANES + lane]);
+            }
+        }
+    }
+
+    @Override
+    public void hashSingleChunkRoots(byte[][] inputs, int[] inputIndices, int first, int[] key, int flags, byte[] outputs){
+        int blocks = Blake3.singleChunkBlocks(inputs[inputIndices[first]].length);
+        initializeLanes(key, 0);
+        // Every input is the first and only chunk of its own tree
+        Arrays.fill(counterLanes, 0);
+        for(int block = 0; block < blocks; block++){
+            boolean last = block == blocks - 1;
+            for(int lane = 0; lane < LANES; lane++){
+                byte[] input = inputs[inputIndices[first + lane]];
+                int blockOffset = block * Blake3.BLOCK_LEN;
+                int blockLen = Math.min(Blake3.BLOCK_LEN, input.length - blockOffset);
+                if(blockLen < Blake3.BLOCK_LEN){
+                    // Zero pad the final block
+                    for(int word = 0; word < 16; word++){
+                        int value = 0;
+                        for(int i = 3; i >= 0; i--){
+                            int index = 4 * word + i;
+                            value = (value << 8) | (index < blockLen ? input[blockOffset + index] & 0xFF : 0);
+                        }
+                        transposed[word * LANES + lane] = value;
+                    }
+                } else {
+                    for(int word = 0; word < 16; word++){
+                        transposed[word * LANES + lane] = (int) INT_LE.get(input, blockOffset + 4 * word);
+                    }
+                }
+                parameterLanes[lane] = blockLen;
+                parameterLanes[LANES + lane] = flags | (block == 0 ? Blake3.CHUNK_START : 0)
+                        | (last ? Blake3.CHUNK_END | Blake3.ROOT : 0);
+            }
+            compressBlock(false);
+        }
+        for(int lane = 0; lane < LANES; lane++){
+            int outOffset = inputIndices[first + lane] * Blake3.OUT_LEN;
+            for(int word = 0; word < 8; word++){
+                INT_LE.set(outputs, outOffset + 4 * word, cvLanes[word * LANES + lane]);
+            }
+        }
+    }
+
+    private void setParameters(int blockLen, int flags){
+        for(int lane = 0; lane < LANES; lane++){
+            parameterLanes[lane] = blockLen;
+            parameterLanes[LANES + lane] = flags;
+        }
+    }
+
+    private static int blockFlags(int block){
+        if(block == 0){
+            return Blake3.CHUNK_START;
+        }
+        return block == Blake3.CHUNK_LEN / Blake3.BLOCK_LEN - 1 ? Blake3.CHUNK_END : 0;
+    }
+
+    // Every lane starts from the key, lane i uses counter chunkCounter + i
+    private void initializeLanes(int[] key, long chunkCounter){
+        for(int lane = 0; lane < LANES; lane++){
+            for(int i = 0; i < 8; i++){
+                cvLanes[i * LANES + lane] = key[i];
+            }
+            counterLanes[lane] = (int) (chunkCounter + lane);
+            counterLanes[LANES + lane] = (int) ((chunkCounter + lane) >>> 32);
+        }
+    }
+
+    private void storeChainingValues(int[] cvs){
+        for(int lane = 0; lane < LANES; lane++){
+            for(int i = 0; i < 8; i++){
+                cvs[lane * 8 + i] = cvLanes[i * LANES + lane];
+            }
+        }
+    }
+
+    // Compress the transposed block of every lane into the chaining values of the lanes,
+    // or into the 16 extended output words of the lanes in outputLanes if xof is set
+    private void compressBlock(boolean xof){
+        IntVector m0 = IntVector.fromArray(SPECIES, transposed, 0);
+        IntVector m1 = IntVector.fromArray(SPECIES, transposed, LANES);
+        IntVector m2 = IntVector.fromArray(SPECIES, transposed, 2 * LANES);
+        IntVector m3 = IntVector.fromArray(SPECIES, transposed, 3 * LANES);
+        IntVector m4 = IntVector.fromArray(SPECIES, transposed, 4 * LANES);
+        IntVector m5 = IntVector.fromArray(SPECIES, transposed, 5 * LANES);
+        IntVector m6 = IntVector.fromArray(SPECIES, transposed, 6 * LANES);
+        IntVector m7 = IntVector.fromArray(SPECIES, transposed, 7 * LANES);
+        IntVector m8 = IntVector.fromArray(SPECIES, transposed, 8 * LANES);
+        IntVector m9 = IntVector.fromArray(SPECIES, transposed, 9 * LANES);
+        IntVector m10 = IntVector.fromArray(SPECIES, transposed, 10 * LANES);
+        IntVector m11 = IntVector.fromArray(SPECIES, transposed, 11 * LANES);
+        IntVector m12 = IntVector.fromArray(SPECIES, transposed, 12 * LANES);
+        IntVector m13 = IntVector.fromArray(SPECIES, transposed, 13 * LANES);
+        IntVector m14 = IntVector.fromArray(SPECIES, transposed, 14 * LANES);
+        IntVector m15 = IntVector.fromArray(SPECIES, transposed, 15 * LANES);
+
+        IntVector v0 = IntVector.fromArray(SPECIES, cvLanes, 0);
+        IntVector v1 = IntVector.fromArray(SPECIES, cvLanes, LANES);
+        IntVector v2 = IntVector.fromArray(SPECIES, cvLanes, 2 * LANES);
+        IntVector v3 = IntVector.fromArray(SPECIES, cvLanes, 3 * LANES);
+        IntVector v4 = IntVector.fromArray(SPECIES, cvLanes, 4 * LANES);
+        IntVector v5 = IntVector.fromArray(SPECIES, cvLanes, 5 * LANES);
+        IntVector v6 = IntVector.fromArray(SPECIES, cvLanes, 6 * LANES);
+        IntVector v7 = IntVector.fromArray(SPECIES, cvLanes, 7 * LANES);
+        IntVector v8 = IntVector.broadcast(SPECIES, Blake3.IV[0]);
+        IntVector v9 = IntVector.broadcast(SPECIES, Blake3.IV[1]);
+        IntVector v10 = IntVector.broadcast(SPECIES, Blake3.IV[2]);
+        IntVector v11 = IntVector.broadcast(SPECIES, Blake3.IV[3]);
+        IntVector v12 = IntVector.fromArray(SPECIES, counterLanes, 0);
+        IntVector v13 = IntVector.fromArray(SPECIES, counterLanes, LANES);
+        IntVector v14 = IntVector.fromArray(SPECIES, parameterLanes, 0);
+        IntVector v15 = IntVector.fromArray(SPECIES, parameterLanes, LANES);
+
+        for(int r = 0; r < 7; r++){
+            // Mix columns
+            v0 = v0.add(v4).add(m0); v12 = v12.lanewise(XOR, v0).lanewise(ROR, 16);
+            v8 = v8.add(v12); v4 = v4.lanewise(XOR, v8).lanewise(ROR, 12);
+            v0 = v0.add(v4).add(m1); v12 = v12.lanewise(XOR, v0).lanewise(ROR, 8);
+            v8 = v8.add(v12); v4 = v4.lanewise(XOR, v8).lanewise(ROR, 7);
+            v1 = v1.add(v5).add(m2); v13 = v13.lanewise(XOR, v1).lanewise(ROR, 16);
+            v9 = v9.add(v13); v5 = v5.lanewise(XOR, v9).lanewise(ROR, 12);
+            v1 = v1.add(v5).add(m3); v13 = v13.lanewise(XOR, v1).lanewise(ROR, 8);
+            v9 = v9.add(v13); v5 = v5.lanewise(XOR, v9).lanewise(ROR, 7);
+            v2 = v2.add(v6).add(m4); v14 = v14.lanewise(XOR, v2).lanewise(ROR, 16);
+            v10 = v10.add(v14); v6 = v6.lanewise(XOR, v10).lanewise(ROR, 12);
+            v2 = v2.add(v6).add(m5); v14 = v14.lanewise(XOR, v2).lanewise(ROR, 8);
+            v10 = v10.add(v14); v6 = v6.lanewise(XOR, v10).lanewise(ROR, 7);
+            v3 = v3.add(v7).add(m6); v15 = v15.lanewise(XOR, v3).lanewise(ROR, 16);
+            v11 = v11.add(v15); v7 = v7.lanewise(XOR, v11).lanewise(ROR, 12);
+            v3 = v3.add(v7).add(m7); v15 = v15.lanewise(XOR, v3).lanewise(ROR, 8);
+            v11 = v11.add(v15); v7 = v7.lanewise(XOR, v11).lanewise(ROR, 7);
+            // Mix diagonals
+            v0 = v0.add(v5).add(m8); v15 = v15.lanewise(XOR, v0).lanewise(ROR, 16);
+            v10 = v10.add(v15); v5 = v5.lanewise(XOR, v10).lanewise(ROR, 12);
+            v0 = v0.add(v5).add(m9); v15 = v15.lanewise(XOR, v0).lanewise(ROR, 8);
+            v10 = v10.add(v15); v5 = v5.lanewise(XOR, v10).lanewise(ROR, 7);
+            v1 = v1.add(v6).add(m10); v12 = v12.lanewise(XOR, v1).lanewise(ROR, 16);
+            v11 = v11.add(v12); v6 = v6.lanewise(XOR, v11).lanewise(ROR, 12);
+            v1 = v1.add(v6).add(m11); v12 = v12.lanewise(XOR, v1).lanewise(ROR, 8);
+            v11 = v11.add(v12); v6 = v6.lanewise(XOR, v11).lanewise(ROR, 7);
+            v2 = v2.add(v7).add(m12); v13 = v13.lanewise(XOR, v2).lanewise(ROR, 16);
+            v8 = v8.add(v13); v7 = v7.lanewise(XOR, v8).lanewise(ROR, 12);
+            v2 = v2.add(v7).add(m13); v13 = v13.lanewise(XOR, v2).lanewise(ROR, 8);
+            v8 = v8.add(v13); v7 = v7.lanewise(XOR, v8).lanewise(ROR, 7);
+            v3 = v3.add(v4).add(m14); v14 = v14.lanewise(XOR, v3).lanewise(ROR, 16);
+            v9 = v9.add(v14); v4 = v4.lanewise(XOR, v9).lanewise(ROR, 12);
+            v3 = v3.add(v4).add(m15); v14 = v14.lanewise(XOR, v3).lanewise(ROR, 8);
+            v9 = v9.add(v14); v4 = v4.lanewise(XOR, v9).lanewise(ROR, 7);
+
+            // Permute the message words for the next round
+            IntVector p0 = m2, p1 = m6, p2 = m3, p3 = m10, p4 = m7, p5 = m0, p6 = m4, p7 = m13;
+            IntVector p8 = m1, p9 = m11, p10 = m12, p11 = m5, p12 = m9, p13 = m14, p14 = m15, p15 = m8;
+            m0 = p0; m1 = p1; m2 = p2; m3 = p3; m4 = p4; m5 = p5; m6 = p6; m7 = p7;
+            m8 = p8; m9 = p9; m10 = p10; m11 = p11; m12 = p12; m13 = p13; m14 = p14; m15 = p15;
+        }
+
+        int[] out = xof ? outputLanes : cvLanes;
+        if(xof){
+            v8.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 0)).intoArray(outputLanes, 8 * LANES);
+            v9.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, LANES)).intoArray(outputLanes, 9 * LANES);
+            v10.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 2 * LANES)).intoArray(outputLanes, 10 * LANES);
+            v11.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 3 * LANES)).intoArray(outputLanes, 11 * LANES);
+            v12.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 4 * LANES)).intoArray(outputLanes, 12 * LANES);
+            v13.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 5 * LANES)).intoArray(outputLanes, 13 * LANES);
+            v14.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 6 * LANES)).intoArray(outputLanes, 14 * LANES);
+            v15.lanewise(XOR, IntVector.fromArray(SPECIES, cvLanes, 7 * LANES)).intoArray(outputLanes, 15 * LANES);
+        }
+        v0.lanewise(XOR, v8).intoArray(out, 0);
+        v1.lanewise(XOR, v9).intoArray(out, LANES);
+        v2.lanewise(XOR, v10).intoArray(out, 2 * LANES);
+        v3.lanewise(XOR, v11).intoArray(out, 3 * LANES);
+        v4.lanewise(XOR, v12).intoArray(out, 4 * LANES);
+        v5.lanewise(XOR, v13).intoArray(out, 5 * LANES);
+        v6.lanewise(XOR, v14).intoArray(out, 6 * LANES);
+        v7.lanewise(XOR, v15).intoArray(out, 7 * LANES);
+    }
+}
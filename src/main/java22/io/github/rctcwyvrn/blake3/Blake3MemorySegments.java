@@ -0,0 +1,98 @@
+package io.github.rctcwyvrn.blake3;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hashing of {@link MemorySegment}s, such as off-heap memory from an arena or mapped files, without copying them to the
+ * heap. Only available on Java 22+, from the versioned layer of the multi-release jar. Experimental, see the README.
+ * <br><br>
+ * Whole blocks are read from the segment as little endian words straight into the compression core. When the backend of the
+ * hasher batches chunks, or when hashing in parallel, segments backed by native memory or byte arrays are read through
+ * buffer views instead, which those paths are built on. Segments of other arrays are always hashed on the calling thread.
+ */
+public final class Blake3MemorySegments {
+    private static final ValueLayout.OfInt INT_LE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    // Buffer views are limited to int indices
+    private static final long VIEW_WINDOW_LEN = 1L << 30;
+
+    private Blake3MemorySegments(){
+    }
+
+    /**
+     * Append the contents of the segment to the hash tree of the hasher
+     * @param hasher Hasher to be updated
+     * @param input Segment to be added, which must be accessible from the calling thread
+     */
+    public static void update(Blake3 hasher, MemorySegment input){
+        if(hasher.backend().degree() > 1 && hasBufferView(input)){
+            for(long offset = 0; offset < input.byteSize(); offset += VIEW_WINDOW_LEN){
+                int len = (int) Math.min(VIEW_WINDOW_LEN, input.byteSize() - offset);
+                hasher.update(input.asSlice(offset, len).asByteBuffer(), 0, len);
+            }
+            return;
+        }
+        updateWords(hasher, input);
+    }
+
+    /**
+     * Append the contents of the segment to the hash tree of the hasher, hashing large segments on the common pool.
+     * The resulting hash is identical to the one produced by {@link #update(Blake3, MemorySegment)}.
+     * @param hasher Hasher to be updated
+     * @param input Segment to be added, which must be accessible from any thread (from a shared or global arena)
+     */
+    public static void updateParallel(Blake3 hasher, MemorySegment input){
+        updateParallel(hasher, input, ForkJoinPool.commonPool(), Blake3.DEFAULT_PARALLEL_SPLIT_LEN);
+    }
+
+    /**
+     * Append the contents of the segment to the hash tree of the hasher, splitting it into power of two sized subtrees that
+     * are hashed on the given pool.
+     * The resulting hash is identical to the one produced by {@link #update(Blake3, MemorySegment)}.
+     * @param hasher Hasher to be updated
+     * @param input Segment to be added, which must be accessible from any thread (from a shared or global arena)
+     * @param pool Pool the subtrees are hashed on
+     * @param minSplitLen Subtrees of at most this many bytes are hashed on a single thread
+     */
+    public static void updateParallel(Blake3 hasher, MemorySegment input, ForkJoinPool pool, int minSplitLen){
+        if(!hasBufferView(input)){
+            updateWords(hasher, input);
+            return;
+        }
+        for(long offset = 0; offset < input.byteSize(); offset += VIEW_WINDOW_LEN){
+            int len = (int) Math.min(VIEW_WINDOW_LEN, input.byteSize() - offset);
+            hasher.updateParallel(input.asSlice(offset, len).asByteBuffer(), 0, len, pool, minSplitLen);
+        }
+    }
+
+    // Only segments of native memory and byte arrays can be viewed as byte buffers
+    private static boolean hasBufferView(MemorySegment input){
+        return input.isNative() || input.heapBase().map(base -> base instanceof byte[]).orElse(false);
+    }
+
+    // Hand whole blocks to the hasher as words, and only copy the bytes around partial blocks
+    private static void updateWords(Blake3 hasher, MemorySegment input){
+        int[] words = new int[16];
+        byte[] bytes = new byte[Blake3.BLOCK_LEN];
+        long offset = 0;
+        long len = input.byteSize();
+        while(len > 0){
+            int partial = hasher.partialBlockLen();
+            // The last block of the input always goes through update so that it stays buffered
+            if(partial == 0 && len > Blake3.BLOCK_LEN){
+                MemorySegment.copy(input, INT_LE, offset, words, 0, 16);
+                hasher.updateBlockWords(words);
+                offset += Blake3.BLOCK_LEN;
+                len -= Blake3.BLOCK_LEN;
+                continue;
+            }
+            int take = (int) Math.min(Blake3.BLOCK_LEN - partial, len);
+            MemorySegment.copy(input, ValueLayout.JAVA_BYTE, offset, bytes, 0, take);
+            hasher.update(bytes, 0, take);
+            offset += take;
+            len -= take;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+// JNI glue of io.github.rctcwyvrn.blake3.NativeBackend, calling the SIMD implementations of the upstream BLAKE3 C code.
+// Words cross the JNI boundary as Java ints and are converted to and from the little endian bytes the C code works on.
+// Java checks every range before calling in, so nothing is checked again here.
+
+#include <jni.h>
+#include <stdbool.h>
+#include <stdint.h>
+#include <string.h>
+
+#include "blake3_impl.h"
+
+#define MAX_CHUNKS 64
+
+static void words_to_bytes(const jint *words, size_t count, uint8_t *out){
+    for(size_t i = 0; i < count; i++){
+        uint32_t w = (uint32_t) words[i];
+        out[4 * i] = (uint8_t) w;
+        out[4 * i + 1] = (uint8_t) (w >> 8);
+        out[4 * i + 2] = (uint8_t) (w >> 16);
+        out[4 * i + 3] = (uint8_t) (w >> 24);
+    }
+}
+
+static void bytes_to_words(const uint8_t *bytes, size_t count, jint *out){
+    for(size_t i = 0; i < count; i++){
+        out[i] = (jint) ((uint32_t) bytes[4 * i] | (uint32_t) bytes[4 * i + 1] << 8 |
+                         (uint32_t) bytes[4 * i + 2] << 16 | (uint32_t) bytes[4 * i + 3] << 24);
+    }
+}
+
+static void get_cv(JNIEnv *env, jintArray array, uint32_t cv[8]){
+    jint words[8];
+    (*env)->GetIntArrayRegion(env, array, 0, 8, words);
+    for(int i = 0; i < 8; i++){
+        cv[i] = (uint32_t) words[i];
+    }
+}
+
+static void get_block(JNIEnv *env, jintArray array, uint8_t block[BLAKE3_BLOCK_LEN]){
+    jint words[16];
+    (*env)->GetIntArrayRegion(env, array, 0, 16, words);
+    words_to_bytes(words, 16, block);
+}
+
+// Hash the chunks at input and store their chaining values as words in cvs
+static void hash_chunks(JNIEnv *env, const uint8_t *input, jint chunks, jintArray key, jlong chunk_counter, jint flags,
+                        jintArray cvs){
+    const uint8_t *inputs[MAX_CHUNKS];
+    uint8_t out[MAX_CHUNKS * BLAKE3_OUT_LEN];
+    jint words[MAX_CHUNKS * 8];
+    uint32_t key_words[8];
+    get_cv(env, key, key_words);
+    for(jint i = 0; i < chunks; i++){
+        inputs[i] = input + (size_t) i * BLAKE3_CHUNK_LEN;
+    }
+    blake3_hash_many(inputs, (size_t) chunks, BLAKE3_CHUNK_LEN / BLAKE3_BLOCK_LEN, key_words, (uint64_t) chunk_counter,
+                     true, (uint8_t) flags, CHUNK_START, CHUNK_END, out);
+    bytes_to_words(out, (size_t) chunks * 8, words);
+    (*env)->SetIntArrayRegion(env, cvs, 0, chunks * 8, words);
+}
+
+JNIEXPORT jint JNICALL Java_io_github_rctcwyvrn_blake3_NativeBackend_simdDegree(JNIEnv *env, jclass cls){
+    return (jint) blake3_simd_degree();
+}
+
+JNIEXPORT void JNICALL Java_io_github_rctcwyvrn_blake3_NativeBackend_compressXof(JNIEnv *env, jclass cls,
+        jintArray chaining_value, jintArray block_words, jlong counter, jint block_len, jint flags, jintArray out){
+    uint32_t cv[8];
+    uint8_t block[BLAKE3_BLOCK_LEN];
+    uint8_t output[BLAKE3_BLOCK_LEN];
+    jint words[16];
+    get_cv(env, chaining_value, cv);
+    get_block(env, block_words, block);
+    blake3_compress_xof(cv, block, (uint8_t) block_len, (uint64_t) counter, (uint8_t) flags, output);
+    bytes_to_words(output, 16, words);
+    (*env)->SetIntArrayRegion(env, out, 0, 16, words);
+}
+
+JNIEXPORT void JNICALL Java_io_github_rctcwyvrn_blake3_NativeBackend_hashChunks(JNIEnv *env, jclass cls,
+        jbyteArray input, jint offset, jint chunks, jintArray key, jlong chunk_counter, jint flags, jintArray cvs){
+    // The critical section only covers the hashing, the results are copied back after it
+    jint words[MAX_CHUNKS * 8];
+    uint8_t out[MAX_CHUNKS * BLAKE3_OUT_LEN];
+    const uint8_t *inputs[MAX_CHUNKS];
+    uint32_t key_words[8];
+    get_cv(env, key, key_words);
+    uint8_t *bytes = (*env)->GetPrimitiveArrayCritical(env, input, NULL);
+    if(bytes == NULL){
+        return;
+    }
+    for(jint i = 0; i < chunks; i++){
+        inputs[i] = bytes + offset + (size_t) i * BLAKE3_CHUNK_LEN;
+    }
+    blake3_hash_many(inputs, (size_t) chunks, BLAKE3_CHUNK_LEN / BLAKE3_BLOCK_LEN, key_words, (uint64_t) chunk_counter,
+                     true, (uint8_t) flags, CHUNK_START, CHUNK_END, out);
+    (*env)->ReleasePrimitiveArrayCritical(env, input, bytes, JNI_ABORT);
+    bytes_to_words(out, (size_t) chunks * 8, words);
+    (*env)->SetIntArrayRegion(env, cvs, 0, chunks * 8, words);
+}
+
+JNIEXPORT void JNICALL Java_io_github_rctcwyvrn_blake3_NativeBackend_hashChunksDirect(JNIEnv *env, jclass cls,
+        jobject input, jint index, jint chunks, jintArray key, jlong chunk_counter, jint flags, jintArray cvs){
+    const uint8_t *bytes = (*env)->GetDirectBufferAddress(env, input);
+    hash_chunks(env, bytes + index, chunks, key, chunk_counter, flags, cvs);
+}
+
+JNIEXPORT void JNICALL Java_io_github_rctcwyvrn_blake3_NativeBackend_rootOutputBlocks(JNIEnv *env, jclass cls,
+        jintArray chaining_value, jintArray block_words, jlong output_counter, jint block_len, jint flags, jint blocks,
+        jbyteArray out, jint offset){
+    uint32_t cv[8];
+    uint8_t block[BLAKE3_BLOCK_LEN];
+    uint8_t output[MAX_CHUNKS * BLAKE3_BLOCK_LEN];
+    get_cv(env, chaining_value, cv);
+    get_block(env, block_words, block);
+    blake3_xof_many(cv, block, (uint8_t) block_len, (uint64_t) output_counter, (uint8_t) flags, output, (size_t) blocks);
+    (*env)->SetByteArrayRegion(env, out, offset, blocks * BLAKE3_BLOCK_LEN, (const jbyte *) output);
+}
@@ -0,0 +1,148 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3Backend;
+import io.github.rctcwyvrn.blake3.OutputReader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+// Every available backend must produce the same hashes. The native backend is only tested when its library is on
+// java.library.path or given by -Dblake3.native.library.
+public class BackendTests {
+    private static final String CONTEXT = "BLAKE3 2019-12-27 16:29:52 test vectors context";
+
+    private static byte[] testVectorInput(int len){
+        byte[] input = new byte[len];
+        for(int i = 0; i < len; i++){
+            input[i] = (byte) (i % 251);
+        }
+        return input;
+    }
+
+    private static String hex(byte[] bytes){
+        StringBuilder hex = new StringBuilder();
+        for(byte b : bytes){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static Blake3Backend backend(String name){
+        for(Blake3Backend backend : Blake3Backend.available()){
+            if(backend.name().equals(name)) return backend;
+        }
+        throw new AssertionError("No backend " + name);
+    }
+
+    @Test
+    public void testAvailable(){
+        List<Blake3Backend> available = Blake3Backend.available();
+        assertEquals("java", available.get(available.size() - 1).name());
+        assertTrue(available.contains(Blake3Backend.selected()));
+        assertEquals(1, backend("java").degree());
+    }
+
+    @Test
+    public void testVectors() throws IOException {
+        String jsonStr = String.join("", Files.readAllLines(Paths.get("./src/test/resources/test_vectors.json")));
+        JSONObject json = new JSONObject(jsonStr);
+        byte[] key = json.getString("key").getBytes(StandardCharsets.US_ASCII);
+        JSONArray cases = json.getJSONArray("cases");
+        for(Blake3Backend backend : Blake3Backend.available()){
+            for(int i = 0; i < cases.length(); i++){
+                JSONObject testCase = cases.getJSONObject(i);
+                int inputLen = testCase.getInt("input_len");
+                String message = backend.name() + " backend, input length " + inputLen;
+                byte[] input = testVectorInput(inputLen);
+
+                Blake3 hasher = Blake3.newInstance().useBackend(backend);
+                hasher.update(input);
+                assertEquals(message, testCase.getString("hash"), hasher.hexdigest(131));
+
+                Blake3 keyed = Blake3.newKeyedHasher(key).useBackend(backend);
+                keyed.update(input);
+                assertEquals(message, testCase.getString("keyed_hash"), keyed.hexdigest(131));
+
+                Blake3 kdf = Blake3.newKeyDerivationHasher(CONTEXT).useBackend(backend);
+                kdf.update(input);
+                assertEquals(message, testCase.getString("derive_key"), kdf.hexdigest(131));
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(inputLen);
+                direct.put(input).flip();
+                Blake3 directHasher = Blake3.newInstance().useBackend(backend);
+                directHasher.update(direct);
+                assertEquals(message, testCase.getString("hash"), directHasher.hexdigest(131));
+
+                Blake3 parallel = Blake3.newInstance().useBackend(backend);
+                parallel.updateParallel(input, ForkJoinPool.commonPool(), 1024);
+                assertEquals(message, testCase.getString("hash"), parallel.hexdigest(131));
+
+                byte[] xof = new byte[131];
+                Blake3 xofHasher = Blake3.newInstance().useBackend(backend);
+                xofHasher.update(input);
+                xofHasher.finalizeXof().fill(xof);
+                assertEquals(message, testCase.getString("hash"), hex(xof));
+            }
+        }
+    }
+
+    @Test
+    public void testLongOutput(){
+        byte[] input = testVectorInput(5000);
+        Blake3 reference = Blake3.newInstance().useBackend(backend("java"));
+        reference.update(input);
+        byte[] expected = new byte[100_000];
+        reference.finalizeXof().fill(expected);
+        for(Blake3Backend backend : Blake3Backend.available()){
+            Blake3 hasher = Blake3.newInstance().useBackend(backend);
+            hasher.update(input);
+            OutputReader reader = hasher.finalizeXof();
+            byte[] output = new byte[expected.length];
+            reader.fill(output, 0, 7);
+            reader.fill(output, 7, output.length - 7);
+            assertArrayEquals(backend.name() + " backend", expected, output);
+        }
+    }
+
+    @Test
+    public void testCompress(){
+        Random random = new Random(19);
+        int[] chainingValue = random.ints(8).toArray();
+        int[] blockWords = random.ints(16).toArray();
+        int[] expected = new int[16];
+        backend("java").compress(chainingValue, blockWords, 0x1_0000_0007L, 37, 11, expected);
+        for(Blake3Backend backend : Blake3Backend.available()){
+            int[] out = new int[16];
+            backend.compress(chainingValue, blockWords, 0x1_0000_0007L, 37, 11, out);
+            assertArrayEquals(backend.name() + " backend", expected, out);
+        }
+    }
+
+    @Test
+    public void testHashMany(){
+        byte[][] inputs = new byte[40][];
+        for(int i = 0; i < inputs.length; i++){
+            inputs[i] = testVectorInput(i * 97 % 1500);
+        }
+        byte[] outputs = new byte[32 * inputs.length];
+        Blake3.hashMany(inputs, outputs);
+        for(int i = 0; i < inputs.length; i++){
+            Blake3 hasher = Blake3.newInstance().useBackend(backend("java"));
+            hasher.update(inputs[i]);
+            assertArrayEquals(hasher.digest(), Arrays.copyOfRange(outputs, 32 * i, 32 * i + 32));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.BaoOutboard;
+import io.github.rctcwyvrn.blake3.BaoVerifyingInputStream;
+import io.github.rctcwyvrn.blake3.Blake3;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BaoTests {
+    private static byte[] content(int len){
+        byte[] content = new byte[len];
+        new Random(len).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] hash(byte[] content){
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(content);
+        return hasher.digest();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testStreamingVerification() throws IOException {
+        for(int chunkGroupLog: new int[]{0, 2}){
+            for(int len: new int[]{0, 1, 1024, 1025, 2048, 4097, 5000, 100 * 1024 + 7}){
+                byte[] content = content(len);
+                BaoOutboard outboard = BaoOutboard.encode(ByteBuffer.wrap(content), chunkGroupLog);
+                long groups = Math.max(1, (len + (1024L << chunkGroupLog) - 1) / (1024L << chunkGroupLog));
+                assertEquals(8 + 64 * (groups - 1), outboard.toByteArray().length);
+                assertEquals(len, outboard.contentLength());
+
+                InputStream verified = new BaoVerifyingInputStream(hash(content),
+                        new ByteArrayInputStream(outboard.toByteArray()), new ByteArrayInputStream(content), chunkGroupLog);
+                assertArrayEquals(content, readAll(verified));
+                assertArrayEquals(content, readAll(outboard.verifyingStream(hash(content), new ByteArrayInputStream(content))));
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptContentIsDetected() throws IOException {
+        byte[] content = content(10 * 1024);
+        byte[] rootHash = hash(content);
+        BaoOutboard outboard = BaoOutboard.encode(content);
+        byte[] corrupt = content.clone();
+        corrupt[5000] ^= 1;
+
+        InputStream verified = outboard.verifyingStream(rootHash, new ByteArrayInputStream(corrupt));
+        byte[] prefix = new byte[4096];
+        assertEquals(4096, verified.readNBytes(prefix, 0, 4096));
+        assertArrayEquals(Arrays.copyOf(content, 4096), prefix);
+        try {
+            verified.read();
+            fail("Corrupt chunk was returned");
+        } catch (IOException expected){
+            assertTrue(expected.getMessage().contains("4096"));
+        }
+
+        byte[] corruptOutboard = outboard.toByteArray();
+        corruptOutboard[8 + 64 + 3] ^= 1;
+        try {
+            readAll(new BaoVerifyingInputStream(rootHash, new ByteArrayInputStream(corruptOutboard),
+                    new ByteArrayInputStream(content), 0));
+            fail("Corrupt outboard tree was accepted");
+        } catch (IOException expected){
+        }
+
+        try {
+            readAll(outboard.verifyingStream(rootHash, new ByteArrayInputStream(Arrays.copyOf(content, 9000))));
+            fail("Truncated content was accepted");
+        } catch (IOException expected){
+        }
+    }
+
+    @Test
+    public void testSliceVerification() throws IOException {
+        byte[] content = content(37 * 1024 + 100);
+        byte[] rootHash = hash(content);
+        BaoOutboard outboard = BaoOutboard.wrap(BaoOutboard.encode(ByteBuffer.wrap(content), 1).toByteArray(), 1);
+
+        outboard.verify(rootHash, 0, content, 0, content.length);
+        outboard.verify(rootHash, 6 * 1024, content, 6 * 1024, 10 * 1024);
+        outboard.verify(rootHash, 36 * 1024, content, 36 * 1024, 1024 + 100);
+
+        byte[] corrupt = content.clone();
+        corrupt[9 * 1024] ^= 1;
+        // The corrupt byte is outside of this range
+        outboard.verify(rootHash, 12 * 1024, corrupt, 12 * 1024, 4 * 1024);
+        try {
+            outboard.verify(rootHash, 8 * 1024, corrupt, 8 * 1024, 4 * 1024);
+            fail("Corrupt range was accepted");
+        } catch (IOException expected){
+        }
+        try {
+            outboard.verify(rootHash, 1024, content, 1024, 2048);
+            fail("Unaligned range was accepted");
+        } catch (IllegalArgumentException expected){
+        }
+    }
+
+    @Test
+    public void testFileEncoding() throws IOException {
+        byte[] content = content(50 * 1024 + 3);
+        Path file = Files.createTempFile("bao", ".bin");
+        try {
+            Files.write(file, content);
+            try(FileChannel channel = FileChannel.open(file)){
+                assertArrayEquals(BaoOutboard.encode(ByteBuffer.wrap(content), 3).toByteArray(),
+                        BaoOutboard.encode(channel, 3).toByteArray());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
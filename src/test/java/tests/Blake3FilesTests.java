@@ -0,0 +1,119 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3Files;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class Blake3FilesTests {
+    private static Path createTree() throws IOException {
+        Path root = Files.createTempDirectory("blake3-files");
+        Random random = new Random(12);
+        int[] sizes = {0, 1, 1024, 5000, 3 << 20};
+        for(int dir = 0; dir < 3; dir++){
+            Path directory = Files.createDirectories(root.resolve("dir" + dir).resolve("nested" + dir));
+            for(int i = 0; i < sizes.length; i++){
+                byte[] content = new byte[sizes[i] + dir];
+                random.nextBytes(content);
+                Files.write((i % 2 == 0 ? directory : directory.getParent()).resolve("file" + i), content);
+            }
+        }
+        Files.createDirectories(root.resolve("empty"));
+        return root;
+    }
+
+    private static void delete(Path root) throws IOException {
+        try(Stream<Path> paths = Files.walk(root)){
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator){
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testHashTree() throws IOException {
+        Path root = createTree();
+        try {
+            Map<Path, byte[]> hashes = new HashMap<>();
+            // A small budget forces the walk to wait for files in flight
+            Blake3Files.hashTree(root, 8192, hashes::put);
+            assertEquals(15, hashes.size());
+            for(Map.Entry<Path, byte[]> entry : hashes.entrySet()){
+                Blake3 hasher = Blake3.newInstance();
+                hasher.update(entry.getKey().toFile());
+                assertArrayEquals(entry.getKey().toString(), hasher.digest(), entry.getValue());
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    public void testTreeDigest() throws IOException {
+        Path root = createTree();
+        try {
+            byte[] digest = Blake3Files.treeDigest(root);
+            assertArrayEquals(digest, Blake3Files.treeDigest(root, 1 << 20, (file, hash) -> {}));
+
+            // Renaming a file or changing its contents changes the digest
+            Path file = root.resolve("dir1").resolve("file1");
+            Path renamed = root.resolve("dir1").resolve("file1.renamed");
+            Files.move(file, renamed);
+            assertFalse(Arrays.equals(digest, Blake3Files.treeDigest(root)));
+            Files.move(renamed, file);
+            assertArrayEquals(digest, Blake3Files.treeDigest(root));
+            Files.write(file, new byte[]{1, 2, 3});
+            assertFalse(Arrays.equals(digest, Blake3Files.treeDigest(root)));
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test
+    public void testTreeDigestIsMerkle() throws IOException {
+        Path root = Files.createTempDirectory("blake3-files");
+        try {
+            Path directory = Files.createDirectories(root.resolve("sub"));
+            byte[] content = new byte[100_000];
+            new Random(3).nextBytes(content);
+            Files.write(root.resolve("a"), new byte[]{1, 2, 3});
+            Files.write(directory.resolve("b"), content);
+
+            // A file is its content hash, a directory hashes its sorted entries and their digests
+            Blake3 contentHasher = Blake3.newInstance();
+            contentHasher.update(content);
+            assertArrayEquals(contentHasher.digest(), Blake3Files.treeDigest(directory.resolve("b")));
+
+            Blake3 sub = Blake3.newKeyDerivationHasher("io.github.rctcwyvrn.blake3 Blake3Files tree digest v1");
+            sub.update(new byte[]{0});
+            sub.updateLengthPrefixedUtf8("b");
+            sub.update(contentHasher.digest());
+            byte[] subDigest = sub.digest();
+            assertArrayEquals(subDigest, Blake3Files.treeDigest(directory));
+
+            Blake3 aHasher = Blake3.newInstance();
+            aHasher.update(new byte[]{1, 2, 3});
+            Blake3 top = Blake3.newKeyDerivationHasher("io.github.rctcwyvrn.blake3 Blake3Files tree digest v1");
+            top.update(new byte[]{0});
+            top.updateLengthPrefixedUtf8("a");
+            top.update(aHasher.digest());
+            top.update(new byte[]{1});
+            top.updateLengthPrefixedUtf8("sub");
+            top.update(subDigest);
+            assertArrayEquals(top.digest(), Blake3Files.treeDigest(root));
+        } finally {
+            delete(root);
+        }
+    }
+}
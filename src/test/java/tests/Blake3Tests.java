@@ -1,18 +1,33 @@
 package tests;
 
 import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3Listener;
+import io.github.rctcwyvrn.blake3.KeyDerivationContext;
+import io.github.rctcwyvrn.blake3.OutputReader;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
@@ -80,6 +95,77 @@ public class Blake3Tests {
         }
     }
 
+    @Test
+    public void testMappedFileHash() throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(Paths.get("LICENSE"));
+        assertEquals("381f3baeddb0ce5202ac9528ecc787c249901e74528ba2cbc5546567a2e0bd33", hasher.hexdigest());
+
+        byte[] input = getTestVectorInput((1 << 20) + 17);
+        Path file = Files.createTempFile("blake3", ".bin");
+        try {
+            Files.write(file, input);
+            Blake3 expected = Blake3.newInstance();
+            expected.update(input);
+
+            Blake3 mapped = Blake3.newInstance();
+            mapped.update(file);
+            assertEquals(expected.hexdigest(), mapped.hexdigest());
+
+            Blake3 parallel = Blake3.newInstance();
+            parallel.updateParallel(file);
+            assertEquals(expected.hexdigest(), parallel.hexdigest());
+
+            // Only the bytes after the channel's position are hashed
+            Blake3 tail = Blake3.newInstance();
+            tail.update(Arrays.copyOfRange(input, 0, 100));
+            try(FileChannel channel = FileChannel.open(file)){
+                channel.position(100);
+                tail.updateParallel(channel, ForkJoinPool.commonPool(), 1024);
+                assertEquals(input.length, channel.position());
+            }
+            assertEquals(expected.hexdigest(), tail.hexdigest());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedFileAllocatesNoReadBuffer() throws IOException {
+        Path file = Files.createTempFile("blake3", ".bin");
+        try {
+            Files.write(file, getTestVectorInput(100_000));
+            BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                    .filter(pool -> pool.getName().equals("direct"))
+                    .findFirst().get();
+            try(FileChannel channel = FileChannel.open(file)){
+                Blake3.newInstance().update(channel);
+                long count = direct.getCount();
+                long capacity = direct.getTotalCapacity();
+                for(int i = 0; i < 8; i++){
+                    channel.position(0);
+                    Blake3.newInstance().update(channel);
+                }
+                assertEquals(count, direct.getCount());
+                assertEquals(capacity, direct.getTotalCapacity());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUnmappableFileHash() throws IOException {
+        // Files in /proc report a size of 0, so they are read instead of mapped
+        Path file = Paths.get("/proc/version");
+        Assume.assumeTrue(Files.isReadable(file));
+        Blake3 expected = Blake3.newInstance();
+        expected.update(Files.readAllBytes(file));
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(file);
+        assertEquals(expected.hexdigest(), hasher.hexdigest());
+    }
+
     @Test
     public void testKeyedFileHash(){
         try {
@@ -112,6 +198,490 @@ public class Blake3Tests {
         return input;
     }
 
+    @Test
+    public void testIncrementalUpdates(){
+        byte[] input = getTestVectorInput(5 * 1024 + 17);
+        Blake3 oneShot = Blake3.newInstance();
+        oneShot.update(input);
+        String expected = oneShot.hexdigest(131);
+
+        for(int pieceLen: new int[]{1, 3, 63, 64, 65, 1023, 1024, 1025, 4096}){
+            Blake3 hasher = Blake3.newInstance();
+            for(int pos = 0; pos < input.length; pos += pieceLen){
+                hasher.update(Arrays.copyOfRange(input, pos, Math.min(input.length, pos + pieceLen)));
+            }
+            assertEquals("piece length " + pieceLen, expected, hasher.hexdigest(131));
+            // Digesting must not disturb the hasher state
+            assertEquals(expected, hasher.hexdigest(131));
+        }
+    }
+
+    @Test
+    public void testOffsetAndBufferUpdates(){
+        byte[] input = getTestVectorInput(3 * 1024 + 100);
+        Blake3 expected = Blake3.newInstance();
+        expected.update(input);
+        byte[] expectedHash = expected.digest(100);
+
+        byte[] padded = new byte[input.length + 20];
+        System.arraycopy(input, 0, padded, 7, input.length);
+        Blake3 offsets = Blake3.newInstance();
+        offsets.update(padded, 7, 1000);
+        offsets.update(padded, 1007, input.length - 1000);
+        assertArrayEquals(expectedHash, offsets.digest(100));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+        direct.put(padded).position(7).limit(7 + input.length);
+        ByteBuffer[] buffers = {
+                ByteBuffer.wrap(padded, 7, input.length),
+                ByteBuffer.wrap(padded).position(7).limit(7 + input.length).slice(),
+                ByteBuffer.wrap(padded, 7, input.length).asReadOnlyBuffer(),
+                direct
+        };
+        for(ByteBuffer buffer: buffers){
+            int limit = buffer.limit();
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(buffer);
+            assertEquals(limit, buffer.position());
+            assertArrayEquals(expectedHash, hasher.digest(100));
+        }
+
+        byte[] out = new byte[110];
+        expected.digest(out, 5, 100);
+        assertArrayEquals(expectedHash, Arrays.copyOfRange(out, 5, 105));
+
+        ByteBuffer directOut = ByteBuffer.allocateDirect(110);
+        directOut.position(3).limit(103);
+        expected.digest(directOut);
+        assertEquals(103, directOut.position());
+        byte[] directHash = new byte[100];
+        directOut.position(3);
+        directOut.get(directHash);
+        assertArrayEquals(expectedHash, directHash);
+
+        ByteBuffer heapOut = ByteBuffer.allocate(100);
+        expected.digest(heapOut);
+        assertArrayEquals(expectedHash, heapOut.array());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUpdateOutOfBounds(){
+        Blake3.newInstance().update(new byte[10], 5, 6);
+    }
+
+    @Test
+    public void testOutputReader(){
+        Blake3 hasher = Blake3.newKeyedHasher(testKeyedHashBytes);
+        hasher.update(getTestVectorInput(2049));
+        byte[] expected = hasher.digest(5000);
+
+        OutputReader reader = hasher.finalizeXof();
+        byte[] out = new byte[5000];
+        int pos = 0;
+        for(int len: new int[]{1, 31, 64, 100, 1024, 1100}){
+            reader.fill(out, pos, len);
+            pos += len;
+        }
+        reader.fill(out, pos, out.length - pos);
+        assertArrayEquals(expected, out);
+        assertEquals(5000, reader.position());
+
+        // Later updates don't affect the reader
+        hasher.update(testBytes);
+        reader.seek(3);
+        byte[] seeked = new byte[4000];
+        reader.fill(seeked);
+        assertArrayEquals(Arrays.copyOfRange(expected, 3, 4003), seeked);
+
+        reader.seek(1000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(3000);
+        reader.fill(direct);
+        assertFalse(direct.hasRemaining());
+        byte[] directBytes = new byte[3000];
+        direct.flip();
+        direct.get(directBytes);
+        assertArrayEquals(Arrays.copyOfRange(expected, 1000, 4000), directBytes);
+    }
+
+    @Test
+    public void testSaveState(){
+        byte[] input = new byte[70_000];
+        new Random(22).nextBytes(input);
+        for(int split : new int[]{0, 1, 64, 65, 1024, 1025, 3072, 5000, 65_536, 70_000}){
+            Blake3[] hashers = {Blake3.newInstance(), Blake3.newKeyedHasher(testKeyedHashBytes), Blake3.newKeyDerivationHasher("context")};
+            for(Blake3 hasher : hashers){
+                Blake3 expected = hasher.copy();
+                expected.update(input);
+
+                hasher.update(input, 0, split);
+                byte[] state = hasher.saveState();
+                Blake3 restored = Blake3.restoreState(state);
+                restored.update(input, split, input.length - split);
+                assertEquals("split at " + split, expected.hexdigest(100), restored.hexdigest(100));
+
+                // States can be embedded in a larger buffer
+                ByteBuffer buffer = ByteBuffer.allocate(state.length + 10);
+                buffer.put((byte) 1).put(state).put((byte) 2).flip().position(1);
+                Blake3 fromBuffer = Blake3.restoreState(buffer);
+                assertEquals(state.length + 1, buffer.position());
+                fromBuffer.update(input, split, input.length - split);
+                assertEquals(expected.hexdigest(), fromBuffer.hexdigest());
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidState(){
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(new byte[3000]);
+        byte[] state = hasher.saveState();
+        List<byte[]> invalid = new ArrayList<>();
+        invalid.add(new byte[0]);
+        invalid.add(Arrays.copyOf(state, state.length - 1));
+        invalid.add(Arrays.copyOf(state, state.length + 1));
+        for(int index : new int[]{0, 4, 5, 6, 38, 79}){
+            // Magic, version, mode, key, chunk counter and block length
+            byte[] corrupted = state.clone();
+            corrupted[index] ^= 0x21;
+            invalid.add(corrupted);
+        }
+        for(byte[] bad : invalid){
+            try {
+                Blake3.restoreState(bad);
+                fail("Restored an invalid state of " + bad.length + " bytes");
+            } catch (IllegalArgumentException e){
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testCopyAndReset(){
+        byte[] prefix = getTestVectorInput(3000);
+        Blake3 prefixHasher = Blake3.newKeyDerivationHasher("copy test");
+        prefixHasher.update(prefix);
+
+        for(int suffixLen: new int[]{0, 1, 100, 2000}){
+            byte[] suffix = getTestVectorInput(suffixLen);
+            Blake3 branch = prefixHasher.copy();
+            branch.update(suffix);
+
+            Blake3 expected = Blake3.newKeyDerivationHasher("copy test");
+            expected.update(prefix);
+            expected.update(suffix);
+            assertEquals(expected.hexdigest(), branch.hexdigest());
+        }
+
+        // Branches don't affect the original hasher
+        Blake3 expected = Blake3.newKeyDerivationHasher("copy test");
+        expected.update(prefix);
+        assertEquals(expected.hexdigest(), prefixHasher.hexdigest());
+
+        prefixHasher.reset();
+        prefixHasher.update(testBytes);
+        Blake3 fresh = Blake3.newKeyDerivationHasher("copy test");
+        fresh.update(testBytes);
+        assertEquals(fresh.hexdigest(), prefixHasher.hexdigest());
+
+        Blake3 keyed = Blake3.newKeyedHasher(testKeyedHashBytes);
+        keyed.update(prefix);
+        keyed.reset();
+        assertEquals(Blake3.newKeyedHasher(testKeyedHashBytes).hexdigest(), keyed.hexdigest());
+    }
+
+    @Test
+    public void testHashMany(){
+        // Enough messages of each length to fill several batches of lanes, plus leftovers and multi chunk messages
+        int[] lengths = {0, 1, 63, 64, 65, 500, 1023, 1024, 1025, 3000};
+        Random random = new Random(10);
+        byte[][] inputs = new byte[400][];
+        for(int i = 0; i < inputs.length; i++){
+            inputs[i] = getTestVectorInput(lengths[random.nextInt(lengths.length)] + (i % 3 == 0 ? 0 : random.nextInt(5)));
+        }
+        byte[] hashes = new byte[inputs.length * 32];
+        byte[] keyedHashes = new byte[inputs.length * 32];
+        byte[] derivedKeys = new byte[inputs.length * 32];
+        Blake3.hashMany(inputs, hashes);
+        Blake3.keyedHashMany(testKeyedHashBytes, inputs, keyedHashes);
+        Blake3.deriveKeyMany("hash many test", inputs, derivedKeys);
+
+        for(int i = 0; i < inputs.length; i++){
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(inputs[i]);
+            assertArrayEquals("input " + i, hasher.digest(), Arrays.copyOfRange(hashes, i * 32, i * 32 + 32));
+
+            Blake3 keyed = Blake3.newKeyedHasher(testKeyedHashBytes);
+            keyed.update(inputs[i]);
+            assertArrayEquals("input " + i, keyed.digest(), Arrays.copyOfRange(keyedHashes, i * 32, i * 32 + 32));
+
+            Blake3 kdf = Blake3.newKeyDerivationHasher("hash many test");
+            kdf.update(inputs[i]);
+            assertArrayEquals("input " + i, kdf.digest(), Arrays.copyOfRange(derivedKeys, i * 32, i * 32 + 32));
+        }
+
+        try {
+            Blake3.hashMany(inputs, new byte[inputs.length * 32 - 1]);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected){
+        }
+    }
+
+    @Test
+    public void testOneShot(){
+        KeyDerivationContext context = KeyDerivationContext.of("one shot test");
+        for(int len : new int[]{0, 1, 3, 63, 64, 65, 127, 1023, 1024, 1025, 5000}){
+            byte[] message = getTestVectorInput(len);
+            // Surround the message and the hash with other bytes, so that any read or write outside them shows
+            byte[] input = new byte[len + 10];
+            Arrays.fill(input, (byte) 0x5a);
+            System.arraycopy(message, 0, input, 7, len);
+            byte[] out = new byte[32 + 5];
+
+            Blake3.hash(input, 7, len, out, 3);
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(message);
+            assertArrayEquals("length " + len, hasher.digest(), Arrays.copyOfRange(out, 3, 35));
+
+            Blake3.keyedHash(testKeyedHashBytes, input, 7, len, out, 3);
+            Blake3 keyed = Blake3.newKeyedHasher(testKeyedHashBytes);
+            keyed.update(message);
+            assertArrayEquals("length " + len, keyed.digest(), Arrays.copyOfRange(out, 3, 35));
+
+            Blake3.deriveKey("one shot test", input, 7, len, out, 3);
+            Blake3 kdf = Blake3.newKeyDerivationHasher(context);
+            kdf.update(message);
+            byte[] derivedKey = kdf.digest();
+            assertArrayEquals("length " + len, derivedKey, Arrays.copyOfRange(out, 3, 35));
+            Blake3.deriveKey(context, input, 7, len, out, 3);
+            assertArrayEquals("length " + len, derivedKey, Arrays.copyOfRange(out, 3, 35));
+
+            assertEquals(0, out[0] | out[1] | out[2] | out[35] | out[36]);
+
+            // The hash may overwrite its own message
+            int inPlaceOffset = Math.min(len, 20);
+            byte[] inPlace = Arrays.copyOf(message, len + 32);
+            Blake3.hash(inPlace, 0, len, inPlace, inPlaceOffset);
+            assertArrayEquals("length " + len, hasher.digest(),
+                    Arrays.copyOfRange(inPlace, inPlaceOffset, inPlaceOffset + 32));
+        }
+
+        try {
+            Blake3.hash(new byte[100], 50, 51, new byte[32], 0);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException expected){
+        }
+        try {
+            Blake3.hash(new byte[100], 0, 100, new byte[40], 9);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException expected){
+        }
+        try {
+            Blake3.keyedHash(new byte[31], new byte[100], 0, 100, new byte[32], 0);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected){
+        }
+    }
+
+    @Test
+    public void testTypedUpdates(){
+        String[] strings = {"", "ascii only", "caf\u00e9 na\u00efve \u00ff", "\u20ac \u4e2d\u6587", "\ud83d\ude00 emoji",
+                "unpaired \ud83d and \ude00", "\u00e9".repeat(100) + "x".repeat(70) + "\ud83d\ude00".repeat(40)};
+        // Start at every offset around a block and a chunk boundary, so that values are split across buffers
+        for(int prefixLen : new int[]{0, 1, 57, 60, 61, 63, 64, 65, 1017, 1020, 1023, 1024, 1025, 5000}){
+            byte[] prefix = new byte[prefixLen];
+            new Random(prefixLen).nextBytes(prefix);
+            ByteBuffer expected = ByteBuffer.allocate(prefixLen + 4 + 8 + 8 + 64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            Blake3 hasher = Blake3.newInstance();
+            expected.put(prefix);
+            hasher.update(prefix);
+            expected.putInt(0xdeadbeef);
+            hasher.updateInt(0xdeadbeef);
+            expected.putLong(0x0123456789abcdefL);
+            hasher.updateLong(0x0123456789abcdefL);
+            expected.putLong(Double.doubleToLongBits(-1.5));
+            hasher.updateDouble(-1.5);
+            for(String string : strings){
+                byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+                expected.put(utf8);
+                hasher.updateUtf8(string);
+                expected.putLong(utf8.length).put(utf8);
+                hasher.updateLengthPrefixedUtf8(new StringBuilder(string));
+                expected.putLong(utf8.length).put(utf8);
+                hasher.updateLengthPrefixed(utf8, 0, utf8.length);
+            }
+            Blake3 reference = Blake3.newInstance();
+            reference.update(expected.array(), 0, expected.position());
+            assertEquals("prefix length " + prefixLen, reference.hexdigest(), hasher.hexdigest());
+        }
+    }
+
+    @Test
+    public void testKeyDerivationContext() throws Exception {
+        KeyDerivationContext context = KeyDerivationContext.of("context test");
+        assertEquals("context test", context.context());
+        Blake3 fromContext = Blake3.newKeyDerivationHasher(context);
+        fromContext.update(testBytes);
+        Blake3 fromString = Blake3.newKeyDerivationHasher("context test");
+        fromString.update(testBytes);
+        assertEquals(fromString.hexdigest(), fromContext.hexdigest());
+
+        // Cached contexts are reused, and a context that may have been evicted by many others keeps its key
+        assertSame(context, KeyDerivationContext.of("context test"));
+        for(int i = 0; i < 500; i++){
+            KeyDerivationContext.of("passing context " + i);
+        }
+        Blake3 again = Blake3.newKeyDerivationHasher(KeyDerivationContext.of("context test"));
+        again.update(testBytes);
+        assertEquals(fromString.hexdigest(), again.hexdigest());
+
+        // More contexts than the cache holds, from several threads at once
+        String[] expected = new String[200];
+        for(int i = 0; i < expected.length; i++){
+            expected[i] = Blake3.newKeyDerivationHasher(KeyDerivationContext.of("context " + i)).hexdigest();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for(int thread = 0; thread < 4; thread++){
+                results.add(executor.submit(() -> {
+                    for(int i = 0; i < 2000; i++){
+                        int index = (i * 7) % expected.length;
+                        assertEquals(expected[index], Blake3.newKeyDerivationHasher("context " + index).hexdigest());
+                    }
+                }));
+            }
+            for(Future<?> result : results){
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testListener() throws IOException {
+        List<long[]> hashed = new ArrayList<>();
+        List<long[]> finalized = new ArrayList<>();
+        List<long[]> files = new ArrayList<>();
+        long[] outputBlocks = new long[1];
+        Blake3.setListener(new Blake3Listener(){
+            @Override
+            public void hashed(long inputBytes, long blockCompressions, long parentCompressions){
+                hashed.add(new long[]{inputBytes, blockCompressions, parentCompressions});
+            }
+
+            @Override
+            public void finalized(long blockCompressions, long parentCompressions, long outputs){
+                finalized.add(new long[]{blockCompressions, parentCompressions, outputs});
+            }
+
+            @Override
+            public void outputRead(long blocks){
+                outputBlocks[0] += blocks;
+            }
+
+            @Override
+            public void fileHashed(long bytes, long readNanos, long hashNanos){
+                files.add(new long[]{bytes, readNanos, hashNanos});
+            }
+        });
+        Path file = Files.createTempFile("blake3-listener", ".bin");
+        try {
+            // 4 full chunks and 14 blocks of the fifth are compressed, its last block stays buffered
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(getTestVectorInput(5000));
+            assertEquals(1, hashed.size());
+            assertArrayEquals(new long[]{5000, 78, 3}, hashed.get(0));
+
+            // Finalizing compresses the buffered block and the root, and doesn't report the input again
+            hasher.digest(131);
+            assertArrayEquals(new long[]{1, 0, 3}, finalized.get(0));
+            hasher.hexdigest();
+            assertArrayEquals(new long[]{1, 0, 1}, finalized.get(1));
+            assertEquals(1, hashed.size());
+
+            Blake3.newInstance().digest();
+            assertArrayEquals(new long[]{0, 0, 1}, finalized.get(2));
+
+            OutputReader reader = hasher.finalizeXof();
+            assertArrayEquals(new long[]{1, 0, 0}, finalized.get(3));
+            reader.seek(60);
+            reader.fill(new byte[200]);
+            assertEquals(5, outputBlocks[0]);
+
+            // Input is reported even if the hasher is never finalized
+            hashed.clear();
+            Blake3.newInstance().update(getTestVectorInput(3000));
+            assertEquals(1, hashed.size());
+            assertArrayEquals(new long[]{3000, 46, 1}, hashed.get(0));
+
+            // Hashing in parallel does the same work as hashing sequentially
+            hashed.clear();
+            Blake3 parallel = Blake3.newInstance();
+            parallel.updateParallel(getTestVectorInput(10_000), ForkJoinPool.commonPool(), 1024);
+            assertArrayEquals(new long[]{10_000, 156, 7}, sum(hashed));
+
+            finalized.clear();
+            hashed.clear();
+            Blake3.hash(new byte[100], 0, 100, new byte[32], 0);
+            assertArrayEquals(new long[]{100, 1, 0}, hashed.get(0));
+            assertArrayEquals(new long[]{0, 0, 1}, finalized.get(0));
+
+            // Every way of hashing a file reports it
+            Files.write(file, getTestVectorInput(10_000));
+            Blake3.newInstance().update(file.toFile());
+            Blake3.newInstance().update(file);
+            Blake3.newInstance().updateParallel(file);
+            try(FileChannel channel = FileChannel.open(file)){
+                Blake3.newInstance().updateParallel(channel, ForkJoinPool.commonPool(), 1024);
+            }
+            assertEquals(4, files.size());
+            for(long[] fileHashed : files){
+                assertEquals(10_000, fileHashed[0]);
+                assertTrue(fileHashed[1] >= 0 && fileHashed[2] > 0);
+            }
+        } finally {
+            Blake3.setListener(null);
+            Files.delete(file);
+        }
+        Blake3.newInstance().digest();
+        assertEquals(1, finalized.size());
+    }
+
+    private static long[] sum(List<long[]> counts){
+        long[] sum = new long[counts.get(0).length];
+        for(long[] count : counts){
+            for(int i = 0; i < sum.length; i++) sum[i] += count[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void testParallelUpdate(){
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(int inputLen: new int[]{0, 1, 1023, 1024, 1025, 2048, 2049, 3073, 8193, 16384, 31744, 102400, 1 << 20}){
+                byte[] input = getTestVectorInput(inputLen);
+                Blake3 sequential = Blake3.newKeyDerivationHasher("parallel test");
+                sequential.update(input);
+
+                Blake3 parallel = Blake3.newKeyDerivationHasher("parallel test");
+                parallel.updateParallel(input, pool, 1024);
+                assertEquals("input length " + inputLen, sequential.hexdigest(131), parallel.hexdigest(131));
+
+                // Start from a partially filled chunk, and keep appending afterwards
+                Blake3 mixed = Blake3.newKeyDerivationHasher("parallel test");
+                mixed.update(Arrays.copyOfRange(input, 0, Math.min(inputLen, 100)));
+                mixed.updateParallel(Arrays.copyOfRange(input, Math.min(inputLen, 100), inputLen), pool, 2048);
+                mixed.update(testBytes);
+                sequential.update(testBytes);
+                assertEquals("input length " + inputLen, sequential.hexdigest(), mixed.hexdigest());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     public void officialTestVectors(){
         // Test vectors from the BLAKE3 repo: https://github.com/BLAKE3-team/BLAKE3/tree/master/test_vectors
@@ -144,6 +714,10 @@ public class Blake3Tests {
                 keyed.update(inputData);
                 kdf.update(inputData);
 
+                Blake3 parallel = Blake3.newInstance();
+                parallel.updateParallel(inputData, ForkJoinPool.commonPool(), 1024);
+                assertEquals(testCase.getString("hash"), parallel.hexdigest(131));
+
                 assertEquals(testCase.getString("hash"), blake3.hexdigest(131));
                 assertEquals(testCase.getString("keyed_hash"), keyed.hexdigest(131));
                 assertEquals(testCase.getString("derive_key"), kdf.hexdigest(131));
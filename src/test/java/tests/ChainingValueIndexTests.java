@@ -0,0 +1,118 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.ChainingValueIndex;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChainingValueIndexTests {
+    private static byte[] content(int len){
+        byte[] content = new byte[len];
+        new Random(len).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] hash(Path file) throws IOException {
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(file);
+        return hasher.digest();
+    }
+
+    private static void write(Path file, long position, byte[] data) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.wrap(data), position);
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdates() throws IOException {
+        Path file = Files.createTempFile("blake3-index", ".bin");
+        try {
+            // 20 groups of 16 KiB, the last one partial
+            Files.write(file, content(310_000));
+            ChainingValueIndex index = ChainingValueIndex.build(file, 4);
+            assertArrayEquals(hash(file), index.hash());
+            assertTrue(index.isUpToDate(file));
+            assertEquals(0, index.update(file));
+
+            // Only the group that changed is hashed again
+            write(file, 100_000, content(10));
+            index.markDirty(100_000, 10);
+            assertFalse(index.isUpToDate(file));
+            assertEquals(1, index.update(file));
+            assertArrayEquals(hash(file), index.hash());
+
+            // A range across a group boundary, and growing the file by three groups
+            write(file, 16383, content(2));
+            index.markDirty(16383, 2);
+            write(file, 310_000, content(40_000));
+            assertEquals(2 + 4, index.update(file));
+            assertEquals(350_000, index.contentLength());
+            assertArrayEquals(hash(file), index.hash());
+
+            // The encoding round trips
+            ChainingValueIndex reread = ChainingValueIndex.wrap(index.toByteArray());
+            assertArrayEquals(index.hash(), reread.hash());
+            assertTrue(reread.isUpToDate(file));
+
+            // A modification without dirty ranges hashes everything again
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+                channel.truncate(20_000);
+            }
+            assertEquals(2, reread.update(file));
+            assertArrayEquals(hash(file), reread.hash());
+
+            // Down to a single group, whose hash comes from its content
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+                channel.truncate(16384);
+            }
+            assertEquals(1, reread.update(file));
+            assertArrayEquals(hash(file), reread.hash());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSmallFiles() throws IOException {
+        Path file = Files.createTempFile("blake3-index", ".bin");
+        try {
+            for(int len : new int[]{0, 1, 1024, 1025, 4096}){
+                Files.write(file, content(len));
+                ChainingValueIndex index = ChainingValueIndex.build(file, 2);
+                assertArrayEquals("length " + len, hash(file), index.hash());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testInvalidEncoding(){
+        byte[] encoded = new byte[56];
+        try {
+            ChainingValueIndex.wrap(encoded);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected){
+        }
+        encoded[0] = 'B';
+        encoded[1] = '3';
+        encoded[2] = 'C';
+        encoded[3] = 'V';
+        encoded[4] = 2;
+        try {
+            ChainingValueIndex.wrap(encoded);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected){
+        }
+    }
+}
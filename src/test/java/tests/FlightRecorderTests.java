@@ -0,0 +1,46 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3Listener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTests {
+    @Test
+    public void testEvents() throws IOException {
+        Path dump = Files.createTempFile("blake3", ".jfr");
+        Blake3.setListener(Blake3Listener.flightRecorder());
+        try(Recording recording = new Recording()){
+            recording.enable("io.github.rctcwyvrn.blake3.Hashed");
+            recording.enable("io.github.rctcwyvrn.blake3.Finalized");
+            recording.start();
+            Blake3 hasher = Blake3.newInstance();
+            hasher.update(new byte[3000]);
+            hasher.digest();
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            assertEquals(2, events.size());
+            RecordedEvent hashed = events.get(0).getEventType().getName().endsWith("Hashed") ? events.get(0) : events.get(1);
+            RecordedEvent finalized = hashed == events.get(0) ? events.get(1) : events.get(0);
+            assertEquals(3000, hashed.getLong("inputBytes"));
+            assertEquals(46, hashed.getLong("blockCompressions"));
+            assertEquals(1, hashed.getLong("parentCompressions"));
+            assertEquals(1, finalized.getLong("blockCompressions"));
+            assertEquals(1, finalized.getLong("outputBlocks"));
+        } finally {
+            Blake3.setListener(null);
+            Files.delete(dump);
+        }
+    }
+}
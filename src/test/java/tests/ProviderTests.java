@@ -0,0 +1,145 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3MessageDigest;
+import io.github.rctcwyvrn.blake3.Blake3Provider;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ProviderTests {
+    private static final Provider PROVIDER = new Blake3Provider();
+    private static final byte[] KEY = "whats the Elvish word for friend".getBytes(StandardCharsets.US_ASCII);
+
+    private static byte[] input(int len){
+        byte[] input = new byte[len];
+        new Random(len).nextBytes(input);
+        return input;
+    }
+
+    private static byte[] hash(byte[] input, int len){
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(input);
+        return hasher.digest(len);
+    }
+
+    @Test
+    public void testMessageDigest() throws Exception {
+        byte[] input = input(5000);
+        MessageDigest md256 = MessageDigest.getInstance("BLAKE3-256", PROVIDER);
+        MessageDigest alias = MessageDigest.getInstance("BLAKE3", PROVIDER);
+        MessageDigest md512 = MessageDigest.getInstance("BLAKE3-512", PROVIDER);
+        assertEquals(32, md256.getDigestLength());
+        assertEquals(64, md512.getDigestLength());
+        assertArrayEquals(hash(input, 32), md256.digest(input));
+        assertArrayEquals(hash(input, 32), alias.digest(input));
+        assertArrayEquals(hash(input, 64), md512.digest(input));
+
+        // Digests reset the state, mixed updates hash the same input
+        md256.update(input[0]);
+        md256.update(input, 1, 2000);
+        md256.update(ByteBuffer.wrap(input, 2001, 1000));
+        ByteBuffer direct = ByteBuffer.allocateDirect(input.length - 3001);
+        direct.put(input, 3001, input.length - 3001).flip();
+        md256.update(direct);
+        byte[] out = new byte[40];
+        assertEquals(32, md256.digest(out, 8, 32));
+        assertArrayEquals(hash(input, 32), Arrays.copyOfRange(out, 8, 40));
+
+        Blake3MessageDigest md100 = new Blake3MessageDigest(100);
+        assertEquals("BLAKE3-800", md100.getAlgorithm());
+        assertArrayEquals(hash(input, 100), md100.digest(input));
+    }
+
+    @Test
+    public void testMessageDigestCloneAndReset() throws Exception {
+        byte[] prefix = input(3000);
+        byte[] suffix = input(700);
+        MessageDigest md = MessageDigest.getInstance("BLAKE3-256", PROVIDER);
+        md.update(prefix);
+        MessageDigest branch = (MessageDigest) md.clone();
+        branch.update(suffix);
+
+        byte[] both = new byte[prefix.length + suffix.length];
+        System.arraycopy(prefix, 0, both, 0, prefix.length);
+        System.arraycopy(suffix, 0, both, prefix.length, suffix.length);
+        assertArrayEquals(hash(both, 32), branch.digest());
+        assertArrayEquals(hash(prefix, 32), md.digest());
+
+        md.update(suffix);
+        md.reset();
+        assertArrayEquals(hash(new byte[0], 32), md.digest());
+    }
+
+    @Test
+    public void testClonesUpdatedConcurrently() throws Exception {
+        // Single byte updates of independent clones on different threads must not interfere
+        byte[] input = input(200_000);
+        byte[] reversed = new byte[input.length];
+        for(int i = 0; i < input.length; i++) reversed[i] = input[input.length - 1 - i];
+        MessageDigest md = MessageDigest.getInstance("BLAKE3-256", PROVIDER);
+        MessageDigest clone = (MessageDigest) md.clone();
+        Mac mac = Mac.getInstance("BLAKE3-256", PROVIDER);
+        mac.init(new SecretKeySpec(KEY, "BLAKE3"));
+        Mac macClone = (Mac) mac.clone();
+
+        Thread thread = new Thread(() -> {
+            for(byte b : reversed){
+                clone.update(b);
+                macClone.update(b);
+            }
+        });
+        thread.start();
+        for(byte b : input){
+            md.update(b);
+            mac.update(b);
+        }
+        thread.join();
+
+        assertArrayEquals(hash(input, 32), md.digest());
+        assertArrayEquals(hash(reversed, 32), clone.digest());
+        Blake3 keyed = Blake3.newKeyedHasher(KEY);
+        keyed.update(input);
+        assertArrayEquals(keyed.digest(), mac.doFinal());
+        Blake3 keyedReversed = Blake3.newKeyedHasher(KEY);
+        keyedReversed.update(reversed);
+        assertArrayEquals(keyedReversed.digest(), macClone.doFinal());
+    }
+
+    @Test
+    public void testMac() throws Exception {
+        byte[] input = input(3000);
+        Blake3 keyed = Blake3.newKeyedHasher(KEY);
+        keyed.update(input);
+        byte[] expected = keyed.digest();
+
+        Mac mac = Mac.getInstance("BLAKE3-256", PROVIDER);
+        mac.init(new SecretKeySpec(KEY, "BLAKE3"));
+        assertEquals(32, mac.getMacLength());
+        mac.update(input, 0, 1000);
+        Mac branch = (Mac) mac.clone();
+        mac.update(input, 1000, 2000);
+        assertArrayEquals(expected, mac.doFinal());
+
+        // doFinal resets to the keyed initial state
+        assertArrayEquals(expected, mac.doFinal(input));
+        branch.update(ByteBuffer.wrap(input, 1000, 2000));
+        assertArrayEquals(expected, branch.doFinal());
+
+        try {
+            mac.init(new SecretKeySpec(new byte[16], "BLAKE3"));
+            fail("Expected an InvalidKeyException");
+        } catch (InvalidKeyException expectedException){
+        }
+    }
+}
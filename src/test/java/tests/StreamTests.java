@@ -0,0 +1,96 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3InputStream;
+import io.github.rctcwyvrn.blake3.Blake3OutputStream;
+import io.github.rctcwyvrn.blake3.Blake3ReadableByteChannel;
+import io.github.rctcwyvrn.blake3.Blake3WritableByteChannel;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StreamTests {
+    private static final byte[] KEY = "whats the Elvish word for friend".getBytes();
+
+    private static byte[] content(int len){
+        byte[] content = new byte[len];
+        new Random(len).nextBytes(content);
+        return content;
+    }
+
+    private static String hash(byte[] content){
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(content);
+        return hasher.hexdigest();
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        byte[] content = content(100_000);
+        Blake3InputStream in = new Blake3InputStream(new ByteArrayInputStream(content));
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        Blake3OutputStream out = new Blake3OutputStream(sink);
+        // Single bytes, odd sized reads and skips
+        out.write(in.read());
+        byte[] buffer = new byte[777];
+        int read;
+        while((read = in.read(buffer, 3, 700)) != -1){
+            out.write(buffer, 3, read);
+        }
+        assertEquals(-1, in.read());
+        assertArrayEquals(content, sink.toByteArray());
+        assertEquals(hash(content), in.hasher().hexdigest());
+        assertEquals(hash(content), out.hasher().hexdigest());
+
+        // Skipped bytes are still hashed
+        Blake3InputStream skipping = new Blake3InputStream(new ByteArrayInputStream(content));
+        assertEquals(50_000, skipping.skip(50_000));
+        assertEquals(50_000, skipping.readAllBytes().length);
+        assertEquals(hash(content), skipping.hasher().hexdigest());
+
+        Blake3 keyed = Blake3.newKeyedHasher(KEY);
+        keyed.update(content);
+        InputStream keyedIn = new Blake3InputStream(new ByteArrayInputStream(content), Blake3.newKeyedHasher(KEY));
+        keyedIn.transferTo(new ByteArrayOutputStream());
+        assertEquals(keyed.hexdigest(), ((Blake3InputStream) keyedIn).hasher().hexdigest());
+    }
+
+    @Test
+    public void testChannels() throws IOException {
+        byte[] content = content(100_000);
+        Blake3ReadableByteChannel in = new Blake3ReadableByteChannel(Channels.newChannel(new ByteArrayInputStream(content)));
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        Blake3WritableByteChannel out = new Blake3WritableByteChannel(Channels.newChannel(sink));
+        for(ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1000), ByteBuffer.allocateDirect(4097)}){
+            // Bytes already in the buffer before the read are not hashed
+            buffer.put((byte) 1);
+            for(int i = 0; i < 20 && in.read(buffer) != -1; i++){
+                buffer.flip();
+                buffer.get();
+                out.write(buffer);
+                buffer.clear();
+                buffer.put((byte) 1);
+            }
+        }
+        ByteBuffer rest = ByteBuffer.allocate(content.length);
+        while(in.read(rest) != -1){
+        }
+        rest.flip();
+        out.write(rest);
+        assertArrayEquals(content, sink.toByteArray());
+        assertEquals(hash(content), in.hasher().hexdigest());
+        assertEquals(hash(content), out.hasher().hexdigest());
+        in.close();
+        out.close();
+        assertFalse(in.isOpen());
+        assertFalse(out.isOpen());
+    }
+}
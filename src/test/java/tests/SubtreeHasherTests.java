@@ -0,0 +1,94 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.OutputReader;
+import io.github.rctcwyvrn.blake3.SubtreeHasher;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SubtreeHasherTests {
+    private static final byte[] KEY = "whats the Elvish word for friend".getBytes(StandardCharsets.US_ASCII);
+    private static final String CONTEXT = "subtree hasher tests";
+
+    // CV of [start, start + len) of the input, splitting it like the BLAKE3 tree down to subtrees of at most leafChunks
+    private static byte[] subtreeCV(SubtreeHasher hasher, byte[] input, int start, int len, int leafChunks){
+        if(len <= leafChunks * 1024){
+            return hasher.chainingValue(input, start, len, start / 1024);
+        }
+        int leftLen = leftLen(len);
+        return hasher.merge(subtreeCV(hasher, input, start, leftLen, leafChunks),
+                subtreeCV(hasher, input, start + leftLen, len - leftLen, leafChunks));
+    }
+
+    private static int leftLen(int len){
+        int chunks = (len + 1023) / 1024;
+        return Integer.highestOneBit(chunks - 1) * 1024;
+    }
+
+    @Test
+    public void testSubtreeMerging(){
+        Random random = new Random(18);
+        for(int len : new int[]{1025, 2048, 3000, 5 * 1024, 11 * 1024 + 300, 64 * 1024, 100_000}){
+            byte[] input = new byte[len];
+            random.nextBytes(input);
+            Blake3[] expected = {Blake3.newInstance(), Blake3.newKeyedHasher(KEY), Blake3.newKeyDerivationHasher(CONTEXT)};
+            SubtreeHasher[] hashers = {SubtreeHasher.newInstance(), SubtreeHasher.newKeyedHasher(KEY),
+                    SubtreeHasher.newKeyDerivationHasher(CONTEXT)};
+            for(int mode = 0; mode < 3; mode++){
+                expected[mode].update(input);
+                byte[] expectedHash = expected[mode].digest(100);
+                for(int leafChunks : new int[]{1, 2, 16}){
+                    int leftLen = leftLen(len);
+                    byte[] left = subtreeCV(hashers[mode], input, 0, leftLen, leafChunks);
+                    byte[] right = subtreeCV(hashers[mode], input, leftLen, len - leftLen, leafChunks);
+                    assertArrayEquals("length " + len, expectedHash, hashers[mode].rootHash(left, right, 100));
+
+                    OutputReader reader = hashers[mode].rootOutput(left, right);
+                    byte[] output = new byte[100];
+                    reader.fill(output);
+                    assertArrayEquals("length " + len, expectedHash, output);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBufferInput(){
+        byte[] input = new byte[4096 + 10];
+        new Random(4).nextBytes(input);
+        SubtreeHasher hasher = SubtreeHasher.newInstance();
+        ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+        direct.put(input).flip();
+        direct.position(4096);
+        assertArrayEquals(hasher.chainingValue(input, 4096, 10, 4), hasher.chainingValue(direct, 4));
+        assertEquals(4096, direct.position());
+    }
+
+    @Test
+    public void testMisalignedSubtrees(){
+        SubtreeHasher hasher = SubtreeHasher.newInstance();
+        byte[] input = new byte[4096];
+        for(long chunkOffset : new long[]{-1, 2, 6}){
+            try {
+                hasher.chainingValue(input, 0, 4096, chunkOffset);
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException expected){
+            }
+        }
+        try {
+            hasher.chainingValue(input, 0, 0, 0);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected){
+        }
+        try {
+            hasher.merge(new byte[32], new byte[31]);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected){
+        }
+    }
+}
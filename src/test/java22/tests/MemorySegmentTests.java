@@ -0,0 +1,74 @@
+package tests;
+
+import io.github.rctcwyvrn.blake3.Blake3;
+import io.github.rctcwyvrn.blake3.Blake3MemorySegments;
+import org.junit.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class MemorySegmentTests {
+    private static byte[] input(int len){
+        byte[] input = new byte[len];
+        new Random(len).nextBytes(input);
+        return input;
+    }
+
+    private static String hash(byte[] input){
+        Blake3 hasher = Blake3.newInstance();
+        hasher.update(input);
+        return hasher.hexdigest();
+    }
+
+    @Test
+    public void testSegments(){
+        try(Arena arena = Arena.ofShared()){
+            for(int len : new int[]{0, 1, 63, 64, 65, 1023, 1024, 1025, 2048, 5000, 16385, 100_000, 1 << 20}){
+                byte[] input = input(len);
+                String expected = hash(input);
+
+                MemorySegment nativeSegment = arena.allocate(len + 3).asSlice(3, len);
+                MemorySegment.copy(input, 0, nativeSegment, ValueLayout.JAVA_BYTE, 0, len);
+                for(MemorySegment segment : new MemorySegment[]{nativeSegment, MemorySegment.ofArray(input)}){
+                    // Start from a partial block so that the whole blocks of the segment are not aligned to the tree
+                    for(int prefixLen : new int[]{0, 7, 1000}){
+                        int split = Math.min(prefixLen, len);
+                        Blake3 hasher = Blake3.newInstance();
+                        hasher.update(input, 0, split);
+                        Blake3MemorySegments.update(hasher, segment.asSlice(split));
+                        assertEquals("input length " + len, expected, hasher.hexdigest());
+
+                        Blake3 parallel = Blake3.newInstance();
+                        parallel.update(input, 0, split);
+                        Blake3MemorySegments.updateParallel(parallel, segment.asSlice(split), ForkJoinPool.commonPool(), 1024);
+                        assertEquals("input length " + len, expected, parallel.hexdigest());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWordSegments(){
+        // Segments of int arrays have no byte buffer view, and always go through the word path
+        for(int words : new int[]{0, 1, 16, 17, 256, 257, 10_000}){
+            byte[] input = input(4 * words);
+            int[] array = new int[words];
+            ByteBuffer.wrap(input).order(ByteOrder.nativeOrder()).asIntBuffer().get(array);
+            for(int prefixLen : new int[]{0, 5, 64}){
+                int split = Math.min(prefixLen, input.length);
+                Blake3 hasher = Blake3.newInstance();
+                hasher.update(input, 0, split);
+                Blake3MemorySegments.updateParallel(hasher, MemorySegment.ofArray(array).asSlice(split));
+                assertEquals("input length " + input.length, hash(input), hasher.hexdigest());
+            }
+        }
+    }
+}